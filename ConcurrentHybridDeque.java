@@ -0,0 +1,471 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe version of HybridDeque. Operations at the head (offerFirst, pollFirst, peekFirst)
+ * and operations at the tail (offerLast, pollLast, peekLast) take separate locks, so one thread
+ * can work at each end at the same time. The two ends only coordinate when the deque is small
+ * enough that they could touch the same block. This implementation does not allow null's to be
+ * added to the collection. Adding a null will result in a NullPointerException.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public class ConcurrentHybridDeque<E> extends AbstractDeque<E> {
+
+  /*
+   * IMPLEMENTATION NOTES ----------------------------------
+   *
+   * The block layout is the same as HybridDeque's: a first element at
+   * leftBlock.elements[leftIndex], a last element at rightBlock.elements[rightIndex], and empty
+   * deques centered in a single block. headLock guards leftBlock and leftIndex, tailLock guards
+   * rightBlock and rightIndex.
+   *
+   * count is the number of elements that are present and not claimed by a poll in progress.
+   * Offers write their slot and then increment count; polls decrement count before they take
+   * their element. So there are always at least count elements in the blocks.
+   *
+   * Offers only ever take their own end's lock. They write a slot the other end cannot reach and
+   * the link field (prev at the head, next at the tail) that only their end writes.
+   *
+   * A poll takes its own end's lock and claims an element by decrementing count with a CAS, but
+   * only while count > threshold (2 * blockSize + 1). While it runs, the other end can claim at most
+   * count - threshold - 1 elements, so at least threshold elements remain between the two ends.
+   * Those span at least three blocks, so neither end can reach the block the other is unlinking.
+   * Below the threshold a poll takes both locks (always headLock first) and works like the
+   * single-threaded deque. Only that path recenters an emptied deque.
+   *
+   * Operations that look at the whole deque (interior removal, clear, toArray and iteration) take
+   * both locks. Iterators walk a snapshot taken under both locks.
+   */
+
+  private static final int DEFAULT_BLOCK_SIZE = 64;
+
+  private final int blockSize;
+  private final int threshold;
+
+  private final ReentrantLock headLock = new ReentrantLock();
+  private final ReentrantLock tailLock = new ReentrantLock();
+  private final AtomicInteger count = new AtomicInteger();
+
+  private Block leftBlock;
+  private int leftIndex;
+  private Block rightBlock;
+  private int rightIndex;
+
+  /**
+   * Doubly linked list node (or block) containing an array with space for multiple elements.
+   */
+  private static final class Block {
+    private final Object[] elements;
+    private Block next;
+    private Block prev;
+
+    /**
+     * Block Constructor.
+     *
+     * @param prev Reference to previous block, or null if this is the first
+     * @param next Reference to next block, or null if this is the last
+     * @param length Number of elements the block can hold
+     */
+    Block(Block prev, Block next, int length) {
+      this.elements = new Object[length];
+      this.next = next;
+      this.prev = prev;
+    }
+  }
+
+  /**
+   * Default Constructor.
+   */
+  public ConcurrentHybridDeque() {
+    this(DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Create a deque whose blocks hold the given number of elements.
+   *
+   * @param blockSize Elements per block, at least 2
+   * @throws IllegalArgumentException if blockSize is less than 2
+   */
+  public ConcurrentHybridDeque(int blockSize) {
+    if (blockSize < 2) {
+      throw new IllegalArgumentException("Illegal block size: " + blockSize);
+    }
+    this.blockSize = blockSize;
+    this.threshold = 2 * blockSize + 1;
+    Block block = new Block(null, null, blockSize);
+    leftBlock = block;
+    rightBlock = block;
+    recenter();
+  }
+
+  @Override
+  public boolean offerFirst(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    headLock.lock();
+    try {
+      if (leftIndex == 0) {
+        Block block = new Block(null, leftBlock, blockSize);
+        leftBlock.prev = block;
+        leftBlock = block;
+        leftIndex = blockSize;
+      }
+      leftIndex--;
+      leftBlock.elements[leftIndex] = e;
+      count.incrementAndGet();
+    } finally {
+      headLock.unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public boolean offerLast(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    tailLock.lock();
+    try {
+      if (rightIndex == blockSize - 1) {
+        Block block = new Block(rightBlock, null, blockSize);
+        rightBlock.next = block;
+        rightBlock = block;
+        rightIndex = -1;
+      }
+      rightIndex++;
+      rightBlock.elements[rightIndex] = e;
+      count.incrementAndGet();
+    } finally {
+      tailLock.unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public E pollFirst() {
+    headLock.lock();
+    try {
+      if (claim()) {
+        return unlinkFirst();
+      }
+    } finally {
+      headLock.unlock();
+    }
+
+    fullyLock();
+    try {
+      if (count.get() == 0) {
+        return null;
+      }
+      count.decrementAndGet();
+      E e = unlinkFirst();
+      if (count.get() == 0) {
+        recenter();
+      }
+      return e;
+    } finally {
+      fullyUnlock();
+    }
+  }
+
+  @Override
+  public E pollLast() {
+    tailLock.lock();
+    try {
+      if (claim()) {
+        return unlinkLast();
+      }
+    } finally {
+      tailLock.unlock();
+    }
+
+    fullyLock();
+    try {
+      if (count.get() == 0) {
+        return null;
+      }
+      count.decrementAndGet();
+      E e = unlinkLast();
+      if (count.get() == 0) {
+        recenter();
+      }
+      return e;
+    } finally {
+      fullyUnlock();
+    }
+  }
+
+  /**
+   * Try to claim one element for a poll that only holds its own end's lock.
+   *
+   * @return true if count was above the threshold and has been decremented
+   */
+  private boolean claim() {
+    int c = count.get();
+    while (c > threshold) {
+      if (count.compareAndSet(c, c - 1)) {
+        return true;
+      }
+      c = count.get();
+    }
+    return false;
+  }
+
+  /**
+   * Remove the first element, which the caller has already claimed. Requires headLock.
+   */
+  @SuppressWarnings("unchecked")
+  private E unlinkFirst() {
+    E e = (E) leftBlock.elements[leftIndex];
+    leftBlock.elements[leftIndex] = null;
+    if (leftIndex == blockSize - 1 && leftBlock.next != null) {
+      Block next = leftBlock.next;
+      next.prev = null;
+      leftBlock = next;
+      leftIndex = 0;
+    } else {
+      leftIndex++;
+    }
+    return e;
+  }
+
+  /**
+   * Remove the last element, which the caller has already claimed. Requires tailLock.
+   */
+  @SuppressWarnings("unchecked")
+  private E unlinkLast() {
+    E e = (E) rightBlock.elements[rightIndex];
+    rightBlock.elements[rightIndex] = null;
+    if (rightIndex == 0 && rightBlock.prev != null) {
+      Block prev = rightBlock.prev;
+      prev.next = null;
+      rightBlock = prev;
+      rightIndex = blockSize - 1;
+    } else {
+      rightIndex--;
+    }
+    return e;
+  }
+
+  /**
+   * Put an empty deque back in the middle of its left block. Requires both locks.
+   */
+  private void recenter() {
+    int center = (blockSize - 1) / 2;
+    leftBlock.next = null;
+    rightBlock = leftBlock;
+    leftIndex = center + 1;
+    rightIndex = center;
+  }
+
+  /**
+   * Acquire both locks, always in the same order.
+   */
+  private void fullyLock() {
+    headLock.lock();
+    tailLock.lock();
+  }
+
+  /**
+   * Release both locks.
+   */
+  private void fullyUnlock() {
+    tailLock.unlock();
+    headLock.unlock();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E peekFirst() {
+    headLock.lock();
+    try {
+      if (count.get() == 0) {
+        return null;
+      }
+      return (E) leftBlock.elements[leftIndex];
+    } finally {
+      headLock.unlock();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E peekLast() {
+    tailLock.lock();
+    try {
+      if (count.get() == 0) {
+        return null;
+      }
+      return (E) rightBlock.elements[rightIndex];
+    } finally {
+      tailLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean removeFirstOccurrence(Object o) {
+    if (o == null) {
+      return false;
+    }
+    fullyLock();
+    try {
+      Block block = leftBlock;
+      int index = leftIndex;
+      for (int i = 0; i < count.get(); i++) {
+        if (o.equals(block.elements[index])) {
+          closeGap(block, index);
+          return true;
+        }
+        index++;
+        if (index == blockSize) {
+          block = block.next;
+          index = 0;
+        }
+      }
+      return false;
+    } finally {
+      fullyUnlock();
+    }
+  }
+
+  @Override
+  public boolean removeLastOccurrence(Object o) {
+    if (o == null) {
+      return false;
+    }
+    fullyLock();
+    try {
+      Block block = rightBlock;
+      int index = rightIndex;
+      for (int i = 0; i < count.get(); i++) {
+        if (o.equals(block.elements[index])) {
+          closeGap(block, index);
+          return true;
+        }
+        index--;
+        if (index < 0) {
+          block = block.prev;
+          index = blockSize - 1;
+        }
+      }
+      return false;
+    } finally {
+      fullyUnlock();
+    }
+  }
+
+  /**
+   * Remove the element at the given block and index by shifting everything after it one slot to
+   * the left. Requires both locks.
+   */
+  private void closeGap(Block block, int index) {
+    while (block != rightBlock) {
+      System.arraycopy(block.elements, index + 1, block.elements, index, blockSize - 1 - index);
+      block.elements[blockSize - 1] = block.next.elements[0];
+      block = block.next;
+      index = 0;
+    }
+    System.arraycopy(block.elements, index + 1, block.elements, index, rightIndex - index);
+    count.decrementAndGet();
+    unlinkLast();
+    if (count.get() == 0) {
+      recenter();
+    }
+  }
+
+  @Override
+  public int size() {
+    return count.get();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return count.get() == 0;
+  }
+
+  @Override
+  public void clear() {
+    fullyLock();
+    try {
+      Block block = new Block(null, null, blockSize);
+      leftBlock = block;
+      rightBlock = block;
+      count.set(0);
+      recenter();
+    } finally {
+      fullyUnlock();
+    }
+  }
+
+  @Override
+  public Object[] toArray() {
+    fullyLock();
+    try {
+      Object[] result = new Object[count.get()];
+      Block block = leftBlock;
+      int index = leftIndex;
+      int copied = 0;
+      while (copied < result.length) {
+        int length = Math.min(blockSize - index, result.length - copied);
+        System.arraycopy(block.elements, index, result, copied, length);
+        copied += length;
+        block = block.next;
+        index = 0;
+      }
+      return result;
+    } finally {
+      fullyUnlock();
+    }
+  }
+
+  /**
+   * Returns an iterator over a snapshot of the deque taken under both locks. The iterator never
+   * throws ConcurrentModificationException and does not support removal.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new SnapshotIterator(toArray(), false);
+  }
+
+  /**
+   * Returns an iterator over a snapshot of the deque, in reverse order. The iterator never throws
+   * ConcurrentModificationException and does not support removal.
+   */
+  @Override
+  public Iterator<E> descendingIterator() {
+    return new SnapshotIterator(toArray(), true);
+  }
+
+  private class SnapshotIterator implements Iterator<E> {
+    private final Object[] snapshot;
+    private final boolean descending;
+    private int position;
+
+    SnapshotIterator(Object[] snapshot, boolean descending) {
+      this.snapshot = snapshot;
+      this.descending = descending;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return position < snapshot.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int index = descending ? snapshot.length - 1 - position : position;
+      position++;
+      return (E) snapshot[index];
+    }
+  }
+}
@@ -0,0 +1,157 @@
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * ConcurrentHybridDeque Test Class - Single threaded behavior checked against ArrayDeque and a
+ * stress test with threads working at both ends.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+class ConcurrentHybridDequeTest {
+
+  @Test
+  void testMatchesArrayDeque() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new ConcurrentHybridDeque<Integer>(1);
+    });
+
+    ConcurrentHybridDeque<Integer> deque = new ConcurrentHybridDeque<Integer>(4);
+    ArrayDeque<Integer> expected = new ArrayDeque<Integer>();
+    assertThrows(NullPointerException.class, () -> {
+      deque.offerFirst(null);
+    });
+    assertNull(deque.pollFirst());
+    assertNull(deque.peekLast());
+
+    // Sizes wander well above and below the locking threshold (2 * 4 + 1)
+    Random rand = new Random(240);
+    for (int step = 0; step < 20000; step++) {
+      int op = rand.nextInt(10);
+      Integer value = rand.nextInt(50);
+      int bias = (step / 2000) % 2 == 0 ? 0 : 2;
+      if (op < 2 + bias) {
+        deque.offerFirst(value);
+        expected.offerFirst(value);
+      } else if (op < 4 + bias) {
+        deque.offerLast(value);
+        expected.offerLast(value);
+      } else if (op < 6) {
+        assertEquals(expected.pollFirst(), deque.pollFirst());
+      } else if (op < 8) {
+        assertEquals(expected.pollLast(), deque.pollLast());
+      } else if (op == 8) {
+        assertEquals(expected.removeFirstOccurrence(value), deque.removeFirstOccurrence(value));
+      } else {
+        assertEquals(expected.removeLastOccurrence(value), deque.removeLastOccurrence(value));
+      }
+      assertEquals(expected.size(), deque.size());
+      assertEquals(expected.peekFirst(), deque.peekFirst());
+      assertEquals(expected.peekLast(), deque.peekLast());
+    }
+    assertArrayEquals(expected.toArray(), deque.toArray());
+
+    List<Integer> backwards = new ArrayList<Integer>();
+    deque.descendingIterator().forEachRemaining(backwards::add);
+    List<Integer> expectedBackwards = new ArrayList<Integer>();
+    expected.descendingIterator().forEachRemaining(expectedBackwards::add);
+    assertEquals(expectedBackwards, backwards);
+
+    // Iterators work on a snapshot
+    Iterator<Integer> it = deque.iterator();
+    int before = deque.size();
+    deque.clear();
+    int seen = 0;
+    while (it.hasNext()) {
+      it.next();
+      seen++;
+    }
+    assertEquals(before, seen);
+    assertTrue(deque.isEmpty());
+    assertNull(deque.pollLast());
+    deque.offerLast(7);
+    assertEquals(Integer.valueOf(7), deque.peekFirst());
+  }
+
+  @Test
+  void testBothEndsConcurrently() throws InterruptedException {
+    final int producers = 4;
+    final int perProducer = 200_000;
+    ConcurrentHybridDeque<Integer> deque = new ConcurrentHybridDeque<Integer>(8);
+    ConcurrentLinkedQueue<Integer> taken = new ConcurrentLinkedQueue<Integer>();
+    AtomicInteger remaining = new AtomicInteger(producers * perProducer);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+
+    for (int p = 0; p < producers; p++) {
+      final int base = p * perProducer;
+      final boolean head = p % 2 == 0;
+      threads.add(new Thread(() -> {
+        awaitQuietly(start);
+        for (int i = 0; i < perProducer; i++) {
+          if (head) {
+            deque.offerFirst(base + i);
+          } else {
+            deque.offerLast(base + i);
+          }
+        }
+      }));
+    }
+    for (int c = 0; c < 4; c++) {
+      final boolean head = c % 2 == 0;
+      threads.add(new Thread(() -> {
+        awaitQuietly(start);
+        while (remaining.get() > 0) {
+          Integer value = head ? deque.pollFirst() : deque.pollLast();
+          if (value == null) {
+            Thread.onSpinWait();
+          } else {
+            taken.add(value);
+            remaining.decrementAndGet();
+          }
+        }
+      }));
+    }
+
+    for (Thread t : threads) {
+      t.start();
+    }
+    start.countDown();
+    for (Thread t : threads) {
+      t.join(60000);
+      assertFalse(t.isAlive());
+    }
+
+    // Every element came out exactly once
+    assertEquals(0, deque.size());
+    assertNull(deque.pollFirst());
+    int[] values = new int[producers * perProducer];
+    int i = 0;
+    for (Integer value : taken) {
+      values[i++] = value;
+    }
+    assertEquals(values.length, i);
+    Arrays.sort(values);
+    for (int j = 0; j < values.length; j++) {
+      assertEquals(j, values[j]);
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,372 @@
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Version of HybridDeque that stores double values directly in double[] blocks, so elements are never
+ * boxed. Since there is no null to signal an empty deque, pollFirst, pollLast, peekFirst and
+ * peekLast throw a NoSuchElementException when the deque is empty; check isEmpty first.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public class DoubleHybridDeque {
+
+  private static final int DEFAULT_BLOCK_SIZE = 64;
+
+  private final int blockSize;
+
+  private Block leftBlock;
+  private int leftIndex;
+  private Block rightBlock;
+  private int rightIndex;
+  private int size;
+  private int modCount;
+
+  // One drained block kept so that an end moving back and forth over a block boundary does not
+  // allocate
+  private Block spareBlock;
+
+  /**
+   * Doubly linked list node (or block) containing an array with space for multiple values.
+   */
+  private static final class Block {
+    private final double[] elements;
+    private Block next;
+    private Block prev;
+
+    /**
+     * Block Constructor.
+     *
+     * @param prev Reference to previous block, or null if this is the first
+     * @param next Reference to next block, or null if this is the last
+     * @param length Number of values the block can hold
+     */
+    Block(Block prev, Block next, int length) {
+      this.elements = new double[length];
+      this.next = next;
+      this.prev = prev;
+    }
+  }
+
+  /**
+   * Default Constructor.
+   */
+  public DoubleHybridDeque() {
+    this(DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Create a deque whose blocks hold the given number of values.
+   *
+   * @param blockSize Values per block, at least 2
+   * @throws IllegalArgumentException if blockSize is less than 2
+   */
+  public DoubleHybridDeque(int blockSize) {
+    if (blockSize < 2) {
+      throw new IllegalArgumentException("Illegal block size: " + blockSize);
+    }
+    this.blockSize = blockSize;
+    leftBlock = new Block(null, null, blockSize);
+    recenter();
+  }
+
+  /**
+   * Add a value to the front of the deque.
+   *
+   * @param value The value to add
+   */
+  public void offerFirst(double value) {
+    if (leftIndex == 0) {
+      Block block = newBlock(null, leftBlock);
+      leftBlock.prev = block;
+      leftBlock = block;
+      leftIndex = blockSize;
+    }
+    leftIndex--;
+    leftBlock.elements[leftIndex] = value;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Add a value to the end of the deque.
+   *
+   * @param value The value to add
+   */
+  public void offerLast(double value) {
+    if (rightIndex == blockSize - 1) {
+      Block block = newBlock(rightBlock, null);
+      rightBlock.next = block;
+      rightBlock = block;
+      rightIndex = -1;
+    }
+    rightIndex++;
+    rightBlock.elements[rightIndex] = value;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Remove the value at the front of the deque.
+   *
+   * @return The removed value
+   * @throws NoSuchElementException if the deque is empty
+   */
+  public double pollFirst() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+
+    double temp = leftBlock.elements[leftIndex];
+    size--;
+    modCount++;
+    if (size == 0) {
+      recenter();
+    } else if (leftIndex == blockSize - 1) {
+      Block drained = leftBlock;
+      leftBlock = drained.next;
+      leftBlock.prev = null;
+      freeBlock(drained);
+      leftIndex = 0;
+    } else {
+      leftIndex++;
+    }
+    return temp;
+  }
+
+  /**
+   * Remove the value at the end of the deque.
+   *
+   * @return The removed value
+   * @throws NoSuchElementException if the deque is empty
+   */
+  public double pollLast() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+
+    double temp = rightBlock.elements[rightIndex];
+    size--;
+    modCount++;
+    if (size == 0) {
+      recenter();
+    } else if (rightIndex == 0) {
+      Block drained = rightBlock;
+      rightBlock = drained.prev;
+      rightBlock.next = null;
+      freeBlock(drained);
+      rightIndex = blockSize - 1;
+    } else {
+      rightIndex--;
+    }
+    return temp;
+  }
+
+  /**
+   * Return the value at the front of the deque without removing it.
+   *
+   * @throws NoSuchElementException if the deque is empty
+   */
+  public double peekFirst() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return leftBlock.elements[leftIndex];
+  }
+
+  /**
+   * Return the value at the end of the deque without removing it.
+   *
+   * @throws NoSuchElementException if the deque is empty
+   */
+  public double peekLast() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return rightBlock.elements[rightIndex];
+  }
+
+  /**
+   * Take the spare block, or allocate one if there is none.
+   */
+  private Block newBlock(Block prev, Block next) {
+    Block block = spareBlock;
+    if (block == null) {
+      return new Block(prev, next, blockSize);
+    }
+    spareBlock = null;
+    block.prev = prev;
+    block.next = next;
+    return block;
+  }
+
+  /**
+   * Unlink a drained block and keep it as the spare.
+   */
+  private void freeBlock(Block block) {
+    block.prev = null;
+    block.next = null;
+    spareBlock = block;
+  }
+
+  /**
+   * Put an empty deque back in the middle of its left block so that both ends have room to grow.
+   */
+  private void recenter() {
+    int center = (blockSize - 1) / 2;
+    leftBlock.next = null;
+    rightBlock = leftBlock;
+    leftIndex = center + 1;
+    rightIndex = center;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Remove all values. Only the left block is kept.
+   */
+  public void clear() {
+    size = 0;
+    modCount++;
+    recenter();
+  }
+
+  /**
+   * Copy the values, front to back, into a new array.
+   */
+  public double[] toArray() {
+    double[] result = new double[size];
+    Block block = leftBlock;
+    int index = leftIndex;
+    int copied = 0;
+    while (copied < size) {
+      int length = Math.min(blockSize - index, size - copied);
+      System.arraycopy(block.elements, index, result, copied, length);
+      copied += length;
+      block = block.next;
+      index = 0;
+    }
+    return result;
+  }
+
+  /**
+   * Perform the given action for each value, front to back, one block at a time.
+   *
+   * @throws ConcurrentModificationException if the action modifies the deque
+   */
+  public void forEach(DoubleConsumer action) {
+    int expectedModCount = modCount;
+    Block block = leftBlock;
+    int index = leftIndex;
+    int remaining = size;
+    while (remaining > 0) {
+      int end = Math.min(blockSize, index + remaining);
+      double[] elements = block.elements;
+      for (int i = index; i < end; i++) {
+        action.accept(elements[i]);
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      remaining -= end - index;
+      block = block.next;
+      index = 0;
+    }
+  }
+
+  /**
+   * Returns a sequential stream of the values, front to back.
+   */
+  public DoubleStream stream() {
+    Spliterator.OfDouble spliterator =
+        Spliterators.spliterator(iterator(), size, Spliterator.ORDERED);
+    return StreamSupport.doubleStream(spliterator, false);
+  }
+
+  /**
+   * Returns a fail-fast iterator over the values, front to back.
+   */
+  public PrimitiveIterator.OfDouble iterator() {
+    return new CustomIterator();
+  }
+
+  /**
+   * Returns a fail-fast iterator over the values, back to front.
+   */
+  public PrimitiveIterator.OfDouble descendingIterator() {
+    return new CustomIteratorDescending();
+  }
+
+  private class CustomIterator implements PrimitiveIterator.OfDouble {
+    private Block block = leftBlock;
+    private int index = leftIndex;
+    private int nextPosition = 0;
+    private final int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return nextPosition < size;
+    }
+
+    @Override
+    public double nextDouble() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (nextPosition >= size) {
+        throw new NoSuchElementException();
+      }
+      double temp = block.elements[index];
+      index++;
+      if (index == blockSize) {
+        block = block.next;
+        index = 0;
+      }
+      nextPosition++;
+      return temp;
+    }
+  }
+
+  private class CustomIteratorDescending implements PrimitiveIterator.OfDouble {
+    private Block block = rightBlock;
+    private int index = rightIndex;
+    private int nextPosition = size - 1;
+    private final int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return nextPosition >= 0;
+    }
+
+    @Override
+    public double nextDouble() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (nextPosition < 0) {
+        throw new NoSuchElementException();
+      }
+      double temp = block.elements[index];
+      index--;
+      if (index < 0) {
+        block = block.prev;
+        index = blockSize - 1;
+      }
+      nextPosition--;
+      return temp;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * DoubleHybridDeque Test Class - Both ends, block boundaries, iterators and streams.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+class DoubleHybridDequeTest {
+
+  @Test
+  void testBothEnds() {
+    DoubleHybridDeque deque = new DoubleHybridDeque(2);
+    assertThrows(NoSuchElementException.class, () -> {
+      deque.pollFirst();
+    });
+
+    for (int i = 0; i < 100; i++) {
+      deque.offerLast(i);
+      deque.offerFirst(-i);
+    }
+    assertEquals(200, deque.size());
+    assertEquals(-99, deque.peekFirst());
+    assertEquals(99, deque.peekLast());
+    assertEquals(0, deque.stream().sum());
+
+    PrimitiveIterator.OfDouble it = deque.iterator();
+    for (int i = 99; i >= 0; i--) {
+      assertEquals(-i, it.nextDouble());
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, it.nextDouble());
+    }
+    assertFalse(it.hasNext());
+
+    for (int i = 99; i >= 0; i--) {
+      assertEquals(i, deque.pollLast());
+      assertEquals(-i, deque.pollFirst());
+    }
+    assertTrue(deque.isEmpty());
+    assertEquals(0, deque.toArray().length);
+  }
+}
@@ -0,0 +1,583 @@
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Blocking version of HybridDeque with an optional capacity bound. All operations are guarded by
+ * one lock; put and take style methods wait on notFull and notEmpty conditions. The batch drainTo
+ * methods move a whole batch of elements while holding the lock once, and wake waiting producers
+ * once per batch. This implementation does not allow null's to be added to the collection. Adding
+ * a null will result in a NullPointerException.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public class HybridBlockingDeque<E> extends AbstractDeque<E> implements BlockingDeque<E> {
+
+  private final HybridDeque<E> deque;
+  private final int capacity;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+
+  /**
+   * Create an unbounded blocking deque.
+   */
+  public HybridBlockingDeque() {
+    this(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Create a blocking deque that holds at most capacity elements.
+   *
+   * @param capacity Maximum number of elements
+   * @throws IllegalArgumentException if capacity is not positive
+   */
+  public HybridBlockingDeque(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Illegal capacity: " + capacity);
+    }
+    this.capacity = capacity;
+    this.deque = new HybridDeque<E>();
+  }
+
+  // -----------------------------------------------
+  // NON-BLOCKING OPERATIONS
+  // -----------------------------------------------
+
+  @Override
+  public boolean offerFirst(E e) {
+    Objects.requireNonNull(e);
+    lock.lock();
+    try {
+      if (deque.size() >= capacity) {
+        return false;
+      }
+      deque.offerFirst(e);
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offerLast(E e) {
+    Objects.requireNonNull(e);
+    lock.lock();
+    try {
+      if (deque.size() >= capacity) {
+        return false;
+      }
+      deque.offerLast(e);
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void addFirst(E e) {
+    if (!offerFirst(e)) {
+      throw new IllegalStateException("Deque full");
+    }
+  }
+
+  @Override
+  public void addLast(E e) {
+    if (!offerLast(e)) {
+      throw new IllegalStateException("Deque full");
+    }
+  }
+
+  @Override
+  public boolean add(E e) {
+    addLast(e);
+    return true;
+  }
+
+  @Override
+  public void push(E e) {
+    addFirst(e);
+  }
+
+  @Override
+  public E pollFirst() {
+    lock.lock();
+    try {
+      E e = deque.pollFirst();
+      if (e != null) {
+        notFull.signal();
+      }
+      return e;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E pollLast() {
+    lock.lock();
+    try {
+      E e = deque.pollLast();
+      if (e != null) {
+        notFull.signal();
+      }
+      return e;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E removeFirst() {
+    E e = pollFirst();
+    if (e == null) {
+      throw new NoSuchElementException();
+    }
+    return e;
+  }
+
+  @Override
+  public E removeLast() {
+    E e = pollLast();
+    if (e == null) {
+      throw new NoSuchElementException();
+    }
+    return e;
+  }
+
+  @Override
+  public E remove() {
+    return removeFirst();
+  }
+
+  @Override
+  public E pop() {
+    return removeFirst();
+  }
+
+  @Override
+  public E peekFirst() {
+    lock.lock();
+    try {
+      return deque.peekFirst();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E peekLast() {
+    lock.lock();
+    try {
+      return deque.peekLast();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E getFirst() {
+    E e = peekFirst();
+    if (e == null) {
+      throw new NoSuchElementException();
+    }
+    return e;
+  }
+
+  @Override
+  public E getLast() {
+    E e = peekLast();
+    if (e == null) {
+      throw new NoSuchElementException();
+    }
+    return e;
+  }
+
+  @Override
+  public E element() {
+    return getFirst();
+  }
+
+  // -----------------------------------------------
+  // BLOCKING OPERATIONS
+  // -----------------------------------------------
+
+  @Override
+  public void putFirst(E e) throws InterruptedException {
+    Objects.requireNonNull(e);
+    lock.lockInterruptibly();
+    try {
+      while (deque.size() >= capacity) {
+        notFull.await();
+      }
+      deque.offerFirst(e);
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void putLast(E e) throws InterruptedException {
+    Objects.requireNonNull(e);
+    lock.lockInterruptibly();
+    try {
+      while (deque.size() >= capacity) {
+        notFull.await();
+      }
+      deque.offerLast(e);
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(E e) throws InterruptedException {
+    putLast(e);
+  }
+
+  @Override
+  public boolean offerFirst(E e, long timeout, TimeUnit unit) throws InterruptedException {
+    Objects.requireNonNull(e);
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (deque.size() >= capacity) {
+        if (nanos <= 0L) {
+          return false;
+        }
+        nanos = notFull.awaitNanos(nanos);
+      }
+      deque.offerFirst(e);
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offerLast(E e, long timeout, TimeUnit unit) throws InterruptedException {
+    Objects.requireNonNull(e);
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (deque.size() >= capacity) {
+        if (nanos <= 0L) {
+          return false;
+        }
+        nanos = notFull.awaitNanos(nanos);
+      }
+      deque.offerLast(e);
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+    return offerLast(e, timeout, unit);
+  }
+
+  @Override
+  public E takeFirst() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      E e;
+      while ((e = deque.pollFirst()) == null) {
+        notEmpty.await();
+      }
+      notFull.signal();
+      return e;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E takeLast() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      E e;
+      while ((e = deque.pollLast()) == null) {
+        notEmpty.await();
+      }
+      notFull.signal();
+      return e;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E take() throws InterruptedException {
+    return takeFirst();
+  }
+
+  @Override
+  public E pollFirst(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      E e;
+      while ((e = deque.pollFirst()) == null) {
+        if (nanos <= 0L) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      notFull.signal();
+      return e;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E pollLast(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      E e;
+      while ((e = deque.pollLast()) == null) {
+        if (nanos <= 0L) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      notFull.signal();
+      return e;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    return pollFirst(timeout, unit);
+  }
+
+  // -----------------------------------------------
+  // BATCH AND WHOLE-DEQUE OPERATIONS
+  // -----------------------------------------------
+
+  @Override
+  public int remainingCapacity() {
+    lock.lock();
+    try {
+      return capacity - deque.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Remove up to max elements from the front of this deque and add them, in order, to the given
+   * collection. The whole batch is moved block by block under a single lock acquisition.
+   *
+   * @throws IllegalArgumentException if c is this deque
+   */
+  @Override
+  public int drainTo(Collection<? super E> c, int max) {
+    Objects.requireNonNull(c);
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    if (max <= 0) {
+      return 0;
+    }
+    lock.lock();
+    try {
+      int moved = deque.drainTo(c, max);
+      if (moved > 0) {
+        notFull.signalAll();
+      }
+      return moved;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean removeFirstOccurrence(Object o) {
+    lock.lock();
+    try {
+      boolean removed = deque.removeFirstOccurrence(o);
+      if (removed) {
+        notFull.signal();
+      }
+      return removed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean removeLastOccurrence(Object o) {
+    lock.lock();
+    try {
+      boolean removed = deque.removeLastOccurrence(o);
+      if (removed) {
+        notFull.signal();
+      }
+      return removed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return removeFirstOccurrence(o);
+  }
+
+  @Override
+  public boolean removeIf(Predicate<? super E> filter) {
+    Objects.requireNonNull(filter);
+    lock.lock();
+    try {
+      boolean removed = deque.removeIf(filter);
+      if (removed) {
+        notFull.signalAll();
+      }
+      return removed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    Objects.requireNonNull(c);
+    return removeIf(c::contains);
+  }
+
+  @Override
+  public boolean retainAll(Collection<?> c) {
+    Objects.requireNonNull(c);
+    return removeIf(e -> !c.contains(e));
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (o == null) {
+      return false;
+    }
+    lock.lock();
+    try {
+      for (E e : deque) {
+        if (o.equals(e)) {
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return deque.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock.lock();
+    try {
+      deque.clear();
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Object[] toArray() {
+    lock.lock();
+    try {
+      return deque.toArray();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public <T> T[] toArray(T[] a) {
+    lock.lock();
+    try {
+      return deque.toArray(a);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns an iterator over a snapshot of the deque. The iterator never throws
+   * ConcurrentModificationException and does not support removal.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new SnapshotIterator(toArray(), false);
+  }
+
+  /**
+   * Returns an iterator over a snapshot of the deque, in reverse order. The iterator never throws
+   * ConcurrentModificationException and does not support removal.
+   */
+  @Override
+  public Iterator<E> descendingIterator() {
+    return new SnapshotIterator(toArray(), true);
+  }
+
+  private class SnapshotIterator implements Iterator<E> {
+    private final Object[] snapshot;
+    private final boolean descending;
+    private int position;
+
+    SnapshotIterator(Object[] snapshot, boolean descending) {
+      this.snapshot = snapshot;
+      this.descending = descending;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return position < snapshot.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int index = descending ? snapshot.length - 1 - position : position;
+      position++;
+      return (E) snapshot[index];
+    }
+  }
+}
@@ -0,0 +1,136 @@
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/**
+ * HybridBlockingDeque Test Class - Capacity bounds, timed waits, batch draining and a bounded
+ * producer/consumer test.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+class HybridBlockingDequeTest {
+
+  @Test
+  void testCapacityAndTimedWaits() throws InterruptedException {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new HybridBlockingDeque<String>(0);
+    });
+
+    HybridBlockingDeque<String> deque = new HybridBlockingDeque<String>(3);
+    assertThrows(NullPointerException.class, () -> {
+      deque.offer(null);
+    });
+    assertThrows(NoSuchElementException.class, () -> {
+      deque.remove();
+    });
+    assertNull(deque.poll(10, TimeUnit.MILLISECONDS));
+
+    deque.put("Two");
+    deque.putFirst("One");
+    assertTrue(deque.offerLast("Three", 10, TimeUnit.MILLISECONDS));
+    assertEquals(0, deque.remainingCapacity());
+    assertFalse(deque.offer("Four"));
+    assertFalse(deque.offerFirst("Zero", 10, TimeUnit.MILLISECONDS));
+    assertThrows(IllegalStateException.class, () -> {
+      deque.add("Four");
+    });
+    assertEquals(3, deque.size());
+
+    assertEquals("One", deque.take());
+    assertEquals("Three", deque.takeLast());
+    assertEquals("Two", deque.getFirst());
+    assertTrue(deque.remove("Two"));
+    assertTrue(deque.isEmpty());
+    assertNull(deque.pollLast(10, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void testDrainToWakesProducers() throws InterruptedException {
+    HybridBlockingDeque<Integer> deque = new HybridBlockingDeque<Integer>(10);
+    assertThrows(IllegalArgumentException.class, () -> {
+      deque.drainTo(deque);
+    });
+    for (int i = 0; i < 10; i++) {
+      deque.put(i);
+    }
+
+    // A producer blocked on a full deque continues once a batch is drained
+    Thread producer = new Thread(() -> {
+      try {
+        for (int i = 10; i < 15; i++) {
+          deque.put(i);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    producer.start();
+
+    List<Integer> drained = new ArrayList<Integer>();
+    assertEquals(6, deque.drainTo(drained, 6));
+    assertEquals(List.of(0, 1, 2, 3, 4, 5), drained);
+    producer.join(10000);
+    assertFalse(producer.isAlive());
+
+    assertEquals(9, deque.drainTo(drained));
+    for (int i = 0; i < 15; i++) {
+      assertEquals(Integer.valueOf(i), drained.get(i));
+    }
+    assertEquals(0, deque.drainTo(drained));
+  }
+
+  @Test
+  void testBoundedProducerConsumer() throws InterruptedException {
+    final int count = 200_000;
+    HybridBlockingDeque<Integer> deque = new HybridBlockingDeque<Integer>(100);
+    AtomicReference<String> failure = new AtomicReference<String>();
+
+    Thread producer = new Thread(() -> {
+      try {
+        for (int i = 0; i < count; i++) {
+          deque.put(i);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    Thread consumer = new Thread(() -> {
+      try {
+        List<Integer> batch = new ArrayList<Integer>();
+        int expected = 0;
+        while (expected < count) {
+          if (expected % 2 == 0) {
+            batch.add(deque.take());
+          }
+          deque.drainTo(batch, 32);
+          for (Integer value : batch) {
+            if (value != expected) {
+              failure.set("expected " + expected + " but took " + value);
+              return;
+            }
+            expected++;
+          }
+          batch.clear();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    producer.start();
+    consumer.start();
+    producer.join(60000);
+    consumer.join(60000);
+
+    assertFalse(producer.isAlive());
+    assertFalse(consumer.isAlive());
+    assertNull(failure.get());
+    assertTrue(deque.isEmpty());
+  }
+}
@@ -1,5 +1,26 @@
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Doubly-linked-list implementation of the java.util.Deque interface. This implementation is more
@@ -29,11 +50,11 @@ public class HybridDeque<E> extends AbstractDeque<E> {
    * 
    * The indices, leftIndex and rightIndex are always in the range:
    * 
-   * 0 <= index < BLOCK_SIZE
+   * 0 <= index < block.elements.length
    *
-   * And their exact relationship is:
+   * And when every block has the same length their exact relationship is:
    * 
-   * (leftIndex + size - 1) % BLOCK_SIZE == rightIndex
+   * (leftIndex + size - 1) & (blockSize - 1) == rightIndex
    *
    * Whenever leftBlock == rightBlock, then:
    * 
@@ -48,11 +69,52 @@ public class HybridDeque<E> extends AbstractDeque<E> {
    * 
    * leftBlock == rightBlock
    * 
-   * leftIndex == CENTER + 1
+   * leftIndex == center + 1
    * 
-   * rightIndex == CENTER
+   * rightIndex == center
+   *
+   * where center == (leftBlock.elements.length - 1) / 2
    * 
    * Checking for size == 0 is the intended way to see whether the Deque is empty.
+   *
+   * modCount is incremented by every operation that adds or removes elements (but not by set).
+   * Iterators, spliterators and forEach record it when they start and throw a
+   * ConcurrentModificationException if it changes behind their back.
+   *
+   * Every deque picks its own blockSize, always a power of two. A deque created with a larger
+   * maxBlockSize grows adaptively: each newly linked block is sized from the current size (about a
+   * quarter of it, rounded down to a power of two and clamped to blockSize..maxBlockSize), so large
+   * deques need few blocks while small ones stay compact. Blocks are therefore not all the same
+   * length, and boundary checks always use the length of the block at hand. Existing blocks are
+   * never resized or copied, and large blocks drained while the deque is small are not kept as
+   * spares, so the block size shrinks back as the deque drains.
+   *
+   * The live blocks are also kept in order in a directory array, blocks[leftSlot..rightSlot], with
+   * leftBlock == blocks[leftSlot] and rightBlock == blocks[rightSlot]. The directory starts with its
+   * blocks in the middle so either end can grow, and it is recentered or doubled (copying only
+   * block references) when one end runs out of slots. When every block has the same length, the
+   * element at position i is found with a shift and a mask:
+   *
+   * blocks[leftSlot + ((leftIndex + i) >>> blockShift)].elements[(leftIndex + i) & blockMask]
+   *
+   * Blocks outside of leftBlock..rightBlock are never kept linked, so leftBlock.prev and
+   * rightBlock.next are always null. A block that is drained as an end crosses a boundary is
+   * unlinked and pushed onto a small free list (spareBlocks) of at most maxSpareBlocks entries, and
+   * new end blocks are taken from that list before anything is allocated. The default cap keeps a
+   * drained deque from holding on to the blocks of its largest size; a deque that repeatedly grows
+   * by more than that many blocks and drains again can raise it with setMaxSpareBlocks.
+   *
+   * snapshot() shares the directory and every live block with an immutable view and then bumps
+   * generation. Each block is stamped with the generation it was created (or copied) in, so a
+   * block from an older generation may still be visible to a snapshot and must not be written.
+   * Every write goes through writable(slot), which replaces such a block with a private copy of
+   * its live range the first time it is touched, and every change to the directory goes through
+   * ownDirectory(), which copies the directory once if a snapshot still holds it. Shared blocks
+   * are never put on the spare list or cleared.
+   *
+   * A bounded deque (setCapacity) evicts before it adds. Evicting the last element of a block
+   * drains it onto the spare list, and the add that follows takes it straight back, so a full
+   * sliding window keeps the same number of blocks and allocates nothing once it is warm.
    * 
    * 
    * (Comments above are a lightly modified version of comments in Python's deque implementation:
@@ -61,27 +123,171 @@ public class HybridDeque<E> extends AbstractDeque<E> {
    * 
    */
 
-  private static int BLOCK_SIZE = 8;
-  private static int CENTER = (BLOCK_SIZE - 1) / 2;
+  private static final int MAX_BLOCK_SIZE = 1 << 30;
+  private static final int DEFAULT_MAX_SPARE_BLOCKS = 16;
+  private static final int INITIAL_DIRECTORY_LENGTH = 8;
+  private static int defaultBlockSize = 8;
+
+  private static final int SNAPSHOT_MAGIC = 0x48594453;
+  private static final int SNAPSHOT_HEADER_BYTES = 20;
+  private static final int SNAPSHOT_CHUNK_BYTES = 1 << 16;
+  private static final int SNAPSHOT_BATCH = 16;
 
+  private final int blockSize;
+  private final int blockMask;
+  private final int blockShift;
+  private final int maxBlockSize;
 
-  private Cursor leftCursor;
-  private Cursor rightCursor;
+
+  private Block leftBlock;
+  private int leftIndex;
+  private Block rightBlock;
+  private int rightIndex;
   private int size;
+  private int modCount;
+
+  private Block[] blocks;
+  private int leftSlot;
+  private int rightSlot;
+
+  private Block spareBlocks;
+  private int spareCount;
+  private int maxSpareBlocks = DEFAULT_MAX_SPARE_BLOCKS;
+
+  private int generation;
+  private boolean directoryShared;
+
+  private int capacity = Integer.MAX_VALUE;
+  private OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+  private Consumer<? super E> evictionListener;
+
+  /**
+   * What a bounded deque does with an element offered while it is full.
+   */
+  public enum OverflowPolicy {
+    /** Remove the element at the opposite end, the one added longest ago, to make room. */
+    EVICT_OLDEST,
+    /** Remove the element at the same end, the one added most recently, to make room. */
+    EVICT_NEWEST,
+    /** Refuse the new element; offers return false and adds throw an IllegalStateException. */
+    REJECT
+  }
 
 
 
   /**
    * DO NOT MODIFY THIS METHOD. This will be used in grading/testing to modify the default block
-   * size..
+   * size.. Only deques created afterwards are affected; existing deques keep their block size.
    *
-   * @param blockSize The new block size
+   * @param blockSize The new block size, rounded up to a power of two
    */
   protected static void setBlockSize(int blockSize) {
-    HybridDeque.BLOCK_SIZE = blockSize;
-    HybridDeque.CENTER = (blockSize - 1) / 2;
+    HybridDeque.defaultBlockSize = roundBlockSize(blockSize);
+  }
+
+  /**
+   * Round a requested block size up to the power of two used for the block arrays.
+   *
+   * @param blockSize The requested block size
+   * @return The smallest power of two that is at least blockSize and at least 2
+   * @throws IllegalArgumentException if blockSize is not positive or too large
+   */
+  private static int roundBlockSize(int blockSize) {
+    if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE) {
+      throw new IllegalArgumentException("Illegal block size: " + blockSize);
+    }
+    if (blockSize <= 2) {
+      return 2;
+    }
+    return Integer.highestOneBit(blockSize - 1) << 1;
+  }
+
+  /**
+   * Set how many drained blocks this deque keeps around for reuse. Blocks beyond this limit are
+   * left for the garbage collector. The default is 16.
+   *
+   * @param maxSpareBlocks The maximum number of spare blocks, zero disables recycling
+   * @throws IllegalArgumentException if maxSpareBlocks is negative
+   */
+  public void setMaxSpareBlocks(int maxSpareBlocks) {
+    if (maxSpareBlocks < 0) {
+      throw new IllegalArgumentException("maxSpareBlocks < 0: " + maxSpareBlocks);
+    }
+    this.maxSpareBlocks = maxSpareBlocks;
+    while (spareCount > maxSpareBlocks) {
+      spareBlocks = spareBlocks.next;
+      spareCount--;
+    }
+  }
+
+  /**
+   * Limit this deque to a number of elements. When the deque is full, an offer at either end is
+   * handled according to the policy; evicted elements are passed to the eviction listener. If the
+   * deque already holds more than capacity elements, the extra ones are evicted now, from the
+   * front for EVICT_OLDEST and from the back for EVICT_NEWEST.
+   *
+   * @param capacity The maximum number of elements, Integer.MAX_VALUE for no limit
+   * @param policy What to do with an element offered while the deque is full
+   * @throws IllegalArgumentException if capacity is not positive, or if policy is REJECT and the
+   *         deque holds more than capacity elements
+   * @throws NullPointerException if policy is null
+   */
+  public void setCapacity(int capacity, OverflowPolicy policy) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Illegal capacity: " + capacity);
+    }
+    if (policy == OverflowPolicy.REJECT && size > capacity) {
+      throw new IllegalArgumentException("Deque holds more than " + capacity + " elements");
+    }
+    this.capacity = capacity;
+    this.overflowPolicy = Objects.requireNonNull(policy);
+    while (size > capacity) {
+      notifyEvicted(policy == OverflowPolicy.EVICT_OLDEST ? pollFirst() : pollLast());
+    }
   }
 
+  /**
+   * Returns the maximum number of elements, Integer.MAX_VALUE if the deque is unbounded.
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the number of elements that can be added before the overflow policy applies.
+   */
+  public int remainingCapacity() {
+    return capacity - size;
+  }
+
+  /**
+   * Set the action called with each element evicted by a bounded deque, after the element that
+   * caused the eviction has been added.
+   *
+   * @param listener The action, or null for none
+   */
+  public void setEvictionListener(Consumer<? super E> listener) {
+    this.evictionListener = listener;
+  }
+
+  /**
+   * Remove an element to make room for one offered at the given end of a full deque.
+   *
+   * @param atFront true if the new element goes at the front
+   * @return The evicted element
+   */
+  private E evict(boolean atFront) {
+    if (overflowPolicy == OverflowPolicy.EVICT_OLDEST) {
+      return atFront ? pollLast() : pollFirst();
+    }
+    return atFront ? pollFirst() : pollLast();
+  }
+
+  private void notifyEvicted(E evicted) {
+    if (evictionListener != null) {
+      evictionListener.accept(evicted);
+    }
+  }
 
   /**
    * Doubly linked list node (or block) containing an array with space for multiple elements.
@@ -90,191 +296,945 @@ public class HybridDeque<E> extends AbstractDeque<E> {
     private E[] elements;
     private Block next;
     private Block prev;
+    private int generation = HybridDeque.this.generation;
 
     /**
      * Block Constructor.
      *
      * @param prev Reference to previous block, or null if this is the first
      * @param next Reference to next block, or null if this is the last
+     * @param length Number of elements the block can hold, a power of two
      */
     @SuppressWarnings("unchecked")
-    public Block(Block prev, Block next) {
-      this.elements = (E[]) (new Object[BLOCK_SIZE]);
+    public Block(Block prev, Block next, int length) {
+      this.elements = (E[]) (new Object[length]);
       this.next = next;
       this.prev = prev;
     }
   }
 
   /**
-   * Many of the complications of implementing this Deque class are related to the fact that there
-   * are two pieces of information that need to be maintained to track a position in the deque: a
-   * block reference and the index within that block. This class combines those two pieces of
-   * information and provides the logic for moving forward and backward through the deque structure.
-   * NOTE: The provided cursor class is *immutable*: once a Cursor object is created, it cannot be
-   * modified. Incrementing forward or backward involves creating new Cursor objects at the required
-   * location. Immutable objects can be cumbersome to work with, but they prevent coding errors
-   * caused by accidentally aliasing mutable objects.
+   * Default Constructor.
    */
-  private class Cursor {
-    private final Block block;
-    private final int index;
+  public HybridDeque() {
+    this(defaultBlockSize);
+  }
 
-    public Cursor(HybridDeque<E>.Block block, int index) {
-      this.block = block;
-      this.index = index;
+  /**
+   * Create a deque whose blocks hold the given number of elements. Small blocks suit many tiny
+   * deques, large blocks suit a few very large ones.
+   *
+   * @param blockSize Elements per block, rounded up to a power of two
+   * @throws IllegalArgumentException if blockSize is not positive or too large
+   */
+  public HybridDeque(int blockSize) {
+    this(blockSize, blockSize);
+  }
+
+  /**
+   * Create a deque whose blocks grow geometrically as the deque gets large. New blocks start at
+   * blockSize elements and grow with the size of the deque up to maxBlockSize, which keeps the
+   * per-element overhead of very large deques close to that of an array.
+   *
+   * @param blockSize Elements in the smallest block, rounded up to a power of two
+   * @param maxBlockSize Elements in the largest block, rounded up to a power of two
+   * @throws IllegalArgumentException if either size is not positive or too large, or if
+   *         maxBlockSize is less than blockSize
+   */
+  public HybridDeque(int blockSize, int maxBlockSize) {
+    this.blockSize = roundBlockSize(blockSize);
+    this.blockMask = this.blockSize - 1;
+    this.blockShift = Integer.numberOfTrailingZeros(this.blockSize);
+    this.maxBlockSize = roundBlockSize(maxBlockSize);
+    if (this.maxBlockSize < this.blockSize) {
+      throw new IllegalArgumentException(
+          "maxBlockSize " + maxBlockSize + " < blockSize " + blockSize);
     }
 
-    /**
-     * Increment the cursor, crossing a block boundary if necessary.
-     *
-     * @return A new cursor at the next position, or null if there are no more valid positions.
-     */
-    private Cursor next() {
+    Block blck = new Block(null, null, this.blockSize);
+    leftBlock = blck;
+    rightBlock = blck;
+    blocks = newDirectory(INITIAL_DIRECTORY_LENGTH);
+    blocks[0] = blck;
+    this.size = 0;
+    recenter();
+  }
 
-      if (index == BLOCK_SIZE - 1) { // We need to cross a block boundary
-        if (block.next == null) {
-          return null;
-        } else {
-          return new Cursor(block.next, 0);
-        }
-      } else { // Just move one spot forward in the current block
-        return new Cursor(block, index + 1);
+
+  @Override
+  public boolean offerFirst(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    E evicted = null;
+    if (size >= capacity) {
+      if (overflowPolicy == OverflowPolicy.REJECT) {
+        return false;
+      }
+      evicted = evict(true);
+    }
+
+    if (leftIndex == 0) {
+      linkFirst();
+    }
+    writable(leftSlot);
+    leftIndex--;
+    leftBlock.elements[leftIndex] = e;
+    size++;
+    modCount++;
+
+    if (evicted != null) {
+      notifyEvicted(evicted);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean offerLast(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    E evicted = null;
+    if (size >= capacity) {
+      if (overflowPolicy == OverflowPolicy.REJECT) {
+        return false;
+      }
+      evicted = evict(false);
+    }
+
+    if (rightIndex == rightBlock.elements.length - 1) {
+      linkLast();
+    }
+    writable(rightSlot);
+    rightIndex++;
+    rightBlock.elements[rightIndex] = e;
+    size++;
+    modCount++;
+
+    if (evicted != null) {
+      notifyEvicted(evicted);
+    }
+    return true;
+  }
+
+  @Override
+  public void addFirst(E e) {
+    if (!offerFirst(e)) {
+      throw new IllegalStateException("Deque full");
+    }
+  }
+
+  @Override
+  public void addLast(E e) {
+    if (!offerLast(e)) {
+      throw new IllegalStateException("Deque full");
+    }
+  }
+
+  @Override
+  public boolean add(E e) {
+    addLast(e);
+    return true;
+  }
+
+  @Override
+  public void push(E e) {
+    addFirst(e);
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends E> c) {
+    Object[] elements = c.toArray();
+    if (elements.length > capacity - size) {
+      // Too many for the room left, so let each element go through the overflow policy
+      checkNoNulls(elements, 0, elements.length);
+      for (Object e : elements) {
+        @SuppressWarnings("unchecked")
+        E element = (E) e;
+        addLast(element);
+      }
+      return elements.length > 0;
+    }
+    return appendAll(elements, 0, elements.length);
+  }
+
+  /**
+   * Add all of the elements in the collection to the front of this deque. Afterwards the first
+   * elements of the deque are the collection's elements in its iteration order.
+   *
+   * @param c The elements to add
+   * @return true if the deque changed
+   * @throws NullPointerException if the collection or any of its elements is null
+   * @throws IllegalStateException if the deque is bounded with the REJECT policy and fills up
+   */
+  public boolean addAllFirst(Collection<? extends E> c) {
+    Object[] elements = c.toArray();
+    checkNoNulls(elements, 0, elements.length);
+    if (elements.length > capacity - size) {
+      for (int i = elements.length - 1; i >= 0; i--) {
+        @SuppressWarnings("unchecked")
+        E element = (E) elements[i];
+        addFirst(element);
+      }
+      return elements.length > 0;
+    }
+
+    int end = elements.length;
+    while (end > 0) {
+      if (leftIndex == 0) {
+        linkFirst();
+      }
+      writable(leftSlot);
+      int count = Math.min(leftIndex, end);
+      System.arraycopy(elements, end - count, leftBlock.elements, leftIndex - count, count);
+      leftIndex -= count;
+      end -= count;
+      size += count;
+      modCount++;
+    }
+    return elements.length > 0;
+  }
+
+  /**
+   * Add a range of an array to the end of this deque, copying whole block segments at a time.
+   * Elements that do not fit in a bounded deque are handled by its overflow policy.
+   *
+   * @param src The elements to add
+   * @param off Index of the first element to add
+   * @param len Number of elements to add
+   * @return true if the deque changed
+   * @throws IndexOutOfBoundsException if the range is not within src
+   * @throws NullPointerException if any element in the range is null; nothing is added
+   */
+  public boolean offerAll(E[] src, int off, int len) {
+    Objects.checkFromIndexSize(off, len, src.length);
+    if (len > capacity - size) {
+      checkNoNulls(src, off, len);
+      boolean changed = false;
+      for (int i = off; i < off + len; i++) {
+        changed |= offerLast(src[i]);
+      }
+      return changed;
+    }
+    return appendAll(src, off, len);
+  }
+
+  /**
+   * Copy a range of elements to the end of the deque one block segment at a time.
+   */
+  private boolean appendAll(Object[] src, int off, int len) {
+    checkNoNulls(src, off, len);
+
+    int end = off + len;
+    while (off < end) {
+      if (rightIndex == rightBlock.elements.length - 1) {
+        linkLast();
+      }
+      writable(rightSlot);
+      int count = Math.min(rightBlock.elements.length - 1 - rightIndex, end - off);
+      System.arraycopy(src, off, rightBlock.elements, rightIndex + 1, count);
+      rightIndex += count;
+      off += count;
+      size += count;
+      modCount++;
+    }
+    return len > 0;
+  }
+
+  /**
+   * Throw a NullPointerException if any element in a range is null.
+   */
+  private static void checkNoNulls(Object[] elements, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      if (elements[i] == null) {
+        throw new NullPointerException();
+      }
+    }
+  }
+
+  /**
+   * Link an empty block before leftBlock and make it the left end block, with leftIndex just past
+   * its last slot.
+   */
+  private void linkFirst() {
+    ownDirectory();
+    Block block = newBlock(null, leftBlock);
+    leftBlock.prev = block;
+    leftBlock = block;
+    if (leftSlot == 0) {
+      growDirectory();
+    }
+    leftSlot--;
+    blocks[leftSlot] = block;
+    leftIndex = block.elements.length;
+  }
+
+  /**
+   * Link an empty block after rightBlock and make it the right end block, with rightIndex just
+   * before its first slot.
+   */
+  private void linkLast() {
+    ownDirectory();
+    Block block = newBlock(rightBlock, null);
+    rightBlock.next = block;
+    rightBlock = block;
+    if (rightSlot == blocks.length - 1) {
+      growDirectory();
+    }
+    rightSlot++;
+    blocks[rightSlot] = block;
+    rightIndex = -1;
+  }
+
+  @Override
+  public E pollFirst() {
+    if (size == 0) {
+      return null;
+    }
+
+    writable(leftSlot);
+    E temp = leftBlock.elements[leftIndex];
+    leftBlock.elements[leftIndex] = null;
+    size--;
+    modCount++;
+    if (size == 0) {
+      recenter();
+    } else if (leftIndex == leftBlock.elements.length - 1) {
+      dropLeftBlock();
+    } else {
+      leftIndex++;
+    }
+    return temp;
+  }
+
+  @Override
+  public E pollLast() {
+    if (size == 0) {
+      return null;
+    }
+
+    writable(rightSlot);
+    E temp = rightBlock.elements[rightIndex];
+    rightBlock.elements[rightIndex] = null;
+    size--;
+    modCount++;
+    if (size == 0) {
+      recenter();
+    } else {
+      retreatRight();
+    }
+    return temp;
+  }
+
+  /**
+   * Move the right end back one slot, crossing a block boundary and releasing the drained block if
+   * necessary.
+   */
+  private void retreatRight() {
+    if (rightIndex == 0) {
+      dropRightBlock();
+    } else {
+      rightIndex--;
+    }
+  }
+
+  /**
+   * Release the drained left end block and start the left end at the first slot of the next one.
+   */
+  private void dropLeftBlock() {
+    ownDirectory();
+    Block drained = leftBlock;
+    leftBlock = drained.next;
+    leftBlock.prev = null;
+    freeBlock(drained);
+    blocks[leftSlot] = null;
+    leftSlot++;
+    leftIndex = 0;
+  }
+
+  /**
+   * Release the drained right end block and start the right end at the last slot of the previous
+   * one.
+   */
+  private void dropRightBlock() {
+    ownDirectory();
+    Block drained = rightBlock;
+    rightBlock = drained.prev;
+    rightBlock.next = null;
+    freeBlock(drained);
+    blocks[rightSlot] = null;
+    rightSlot--;
+    rightIndex = rightBlock.elements.length - 1;
+  }
+
+  /**
+   * Remove up to max elements from the front of this deque and store them in dst, first element at
+   * dst[0]. Whole block segments are copied out, cleared and released at once.
+   *
+   * @param dst The array to fill
+   * @param max The maximum number of elements to remove
+   * @return The number of elements removed, min(max, size())
+   * @throws IllegalArgumentException if max is negative
+   * @throws IndexOutOfBoundsException if dst is too short for the elements removed
+   */
+  public int pollFirst(E[] dst, int max) {
+    int count = drainCount(max);
+    Objects.checkFromIndexSize(0, count, dst.length);
+    int copied = 0;
+    while (copied < count) {
+      int length = Math.min(count - copied, firstSegmentLength());
+      System.arraycopy(leftBlock.elements, leftIndex, dst, copied, length);
+      removeFirstSegment(length);
+      copied += length;
+    }
+    return count;
+  }
+
+  /**
+   * Remove up to max elements from the end of this deque and store them in dst in the order
+   * repeated calls to pollLast() would return them, last element at dst[0].
+   *
+   * @param dst The array to fill
+   * @param max The maximum number of elements to remove
+   * @return The number of elements removed, min(max, size())
+   * @throws IllegalArgumentException if max is negative
+   * @throws IndexOutOfBoundsException if dst is too short for the elements removed
+   */
+  public int pollLast(E[] dst, int max) {
+    int count = drainCount(max);
+    Objects.checkFromIndexSize(0, count, dst.length);
+    int copied = 0;
+    while (copied < count) {
+      int start = leftBlock == rightBlock ? leftIndex : 0;
+      int length = Math.min(count - copied, rightIndex + 1 - start);
+      System.arraycopy(rightBlock.elements, rightIndex + 1 - length, dst, copied, length);
+      for (int i = copied, j = copied + length - 1; i < j; i++, j--) {
+        E temp = dst[i];
+        dst[i] = dst[j];
+        dst[j] = temp;
+      }
+      removeLastSegment(length);
+      copied += length;
+    }
+    return count;
+  }
+
+  /**
+   * Remove all elements from the front of this deque and add them to the given collection.
+   *
+   * @param c The collection to add the elements to
+   * @return The number of elements transferred
+   * @throws IllegalArgumentException if c is this deque
+   */
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Remove up to max elements from the front of this deque and add them, in order, to the given
+   * collection. Each block segment is handed over with one addAll call (one arraycopy when c is a
+   * HybridDeque with room for it) before it is cleared and released. A bounded HybridDeque gets the
+   * segments through addAll, so its overflow policy and eviction listener apply. If c refuses an
+   * element, the exception propagates and elements of the current segment may end up in both
+   * collections.
+   *
+   * @param c The collection to add the elements to
+   * @param max The maximum number of elements to transfer
+   * @return The number of elements transferred
+   * @throws IllegalArgumentException if c is this deque or max is negative
+   */
+  public int drainTo(Collection<? super E> c, int max) {
+    Objects.requireNonNull(c);
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    int count = drainCount(max);
+    int moved = 0;
+    while (moved < count) {
+      int length = Math.min(count - moved, firstSegmentLength());
+      if (c instanceof HybridDeque && ((HybridDeque<?>) c).remainingCapacity() >= length) {
+        ((HybridDeque<?>) c).appendAll(leftBlock.elements, leftIndex, length);
+      } else {
+        c.addAll(Arrays.asList(leftBlock.elements).subList(leftIndex, leftIndex + length));
       }
+      removeFirstSegment(length);
+      moved += length;
+    }
+    return count;
+  }
+
+  /**
+   * Number of elements a bulk removal of at most max elements takes.
+   */
+  private int drainCount(int max) {
+    if (max < 0) {
+      throw new IllegalArgumentException("max < 0: " + max);
+    }
+    return Math.min(max, size);
+  }
+
+  /**
+   * Number of elements stored contiguously in leftBlock starting at leftIndex.
+   */
+  private int firstSegmentLength() {
+    int end = leftBlock == rightBlock ? rightIndex + 1 : leftBlock.elements.length;
+    return end - leftIndex;
+  }
+
+  /**
+   * Clear the first length elements of leftBlock starting at leftIndex, which must all be in that
+   * block, and move the left end past them.
+   */
+  private void removeFirstSegment(int length) {
+    writable(leftSlot);
+    Arrays.fill(leftBlock.elements, leftIndex, leftIndex + length, null);
+    leftIndex += length;
+    size -= length;
+    modCount++;
+    if (size == 0) {
+      recenter();
+    } else if (leftIndex == leftBlock.elements.length) {
+      dropLeftBlock();
+    }
+  }
+
+  /**
+   * Clear the last length elements of rightBlock ending at rightIndex, which must all be in that
+   * block, and move the right end before them.
+   */
+  private void removeLastSegment(int length) {
+    writable(rightSlot);
+    Arrays.fill(rightBlock.elements, rightIndex + 1 - length, rightIndex + 1, null);
+    rightIndex -= length;
+    size -= length;
+    modCount++;
+    if (size == 0) {
+      recenter();
+    } else if (rightIndex < 0) {
+      dropRightBlock();
+    }
+  }
+
+  /**
+   * Length of the next block to link at either end. This is always blockSize unless the deque was
+   * created with a larger maxBlockSize.
+   *
+   * @return A power of two between blockSize and maxBlockSize
+   */
+  private int nextBlockLength() {
+    if (maxBlockSize == blockSize) {
+      return blockSize;
+    }
+    int length = Integer.highestOneBit(size >>> 2);
+    return Math.min(maxBlockSize, Math.max(blockSize, length));
+  }
+
+  /**
+   * Take a block from the spare list, or allocate one if the list is empty or its top block has
+   * the wrong length.
+   *
+   * @param prev Reference to previous block, or null if this is the first
+   * @param next Reference to next block, or null if this is the last
+   * @return A block whose elements are all null
+   */
+  private Block newBlock(Block prev, Block next) {
+    int length = nextBlockLength();
+    Block block = spareBlocks;
+    if (block == null) {
+      return new Block(prev, next, length);
+    }
+    spareBlocks = block.next;
+    spareCount--;
+    if (block.elements.length != length) {
+      // A leftover from when the deque had a different size
+      return new Block(prev, next, length);
+    }
+    block.prev = prev;
+    block.next = next;
+    block.generation = generation;
+    return block;
+  }
+
+  /**
+   * Unlink a drained block and keep it for reuse if there is room. Blocks shared with a snapshot
+   * still hold the snapshot's elements and are never kept.
+   *
+   * @param block The drained block
+   */
+  private void freeBlock(Block block) {
+    block.prev = null;
+    block.next = null;
+    if (spareCount < maxSpareBlocks && block.elements.length == nextBlockLength()
+        && block.generation == generation) {
+      block.next = spareBlocks;
+      spareBlocks = block;
+      spareCount++;
+    }
+  }
+
+  /**
+   * Put an empty deque back in the middle of its left block so that both ends have room to grow.
+   */
+  private void recenter() {
+    ownDirectory();
+    int center = (leftBlock.elements.length - 1) / 2;
+    rightBlock = leftBlock;
+    leftIndex = center + 1;
+    rightIndex = center;
+
+    blocks[leftSlot] = null;
+    leftSlot = blocks.length / 2;
+    rightSlot = leftSlot;
+    blocks[leftSlot] = leftBlock;
+  }
+
+  /**
+   * Allocate an empty block directory.
+   *
+   * @param length Number of slots
+   * @return The new directory
+   */
+  @SuppressWarnings("unchecked")
+  private Block[] newDirectory(int length) {
+    return (Block[]) new HybridDeque<?>.Block[length];
+  }
+
+  /**
+   * Make room at both ends of the block directory. The live slots are moved back to the middle,
+   * into a directory twice as long if more than half of the slots are in use.
+   */
+  private void growDirectory() {
+    int used = rightSlot - leftSlot + 1;
+    int length = blocks.length;
+    if (used * 2 > length) {
+      length *= 2;
+    }
+    Block[] directory = length == blocks.length ? blocks : newDirectory(length);
+    int slot = (length - used) / 2;
+    System.arraycopy(blocks, leftSlot, directory, slot, used);
+    Arrays.fill(directory, 0, slot, null);
+    Arrays.fill(directory, slot + used, length, null);
+    blocks = directory;
+    leftSlot = slot;
+    rightSlot = slot + used - 1;
+  }
+
+  /**
+   * Copy the block directory if a snapshot shares it, so that it can be changed.
+   */
+  private void ownDirectory() {
+    if (directoryShared) {
+      blocks = blocks.clone();
+      directoryShared = false;
+    }
+  }
+
+  /**
+   * Return the live block in a directory slot, first replacing it with a private copy if it is
+   * shared with a snapshot. Only the live part of the block is copied.
+   *
+   * @param slot A slot between leftSlot and rightSlot
+   * @return A block that may be written
+   */
+  private Block writable(int slot) {
+    Block block = blocks[slot];
+    if (block.generation == generation) {
+      return block;
+    }
+    ownDirectory();
+    Block copy = new Block(block.prev, block.next, block.elements.length);
+    int from = slot == leftSlot ? leftIndex : 0;
+    int to = slot == rightSlot ? rightIndex + 1 : block.elements.length;
+    if (to > from) {
+      System.arraycopy(block.elements, from, copy.elements, from, to - from);
+    }
+    if (copy.prev != null) {
+      copy.prev.next = copy;
+    }
+    if (copy.next != null) {
+      copy.next.prev = copy;
+    }
+    blocks[slot] = copy;
+    if (slot == leftSlot) {
+      leftBlock = copy;
+    }
+    if (slot == rightSlot) {
+      rightBlock = copy;
+    }
+    return copy;
+  }
+
+  /**
+   * Make every live block writable, for operations that rewrite the whole deque.
+   */
+  private void unshareAll() {
+    for (int slot = leftSlot; slot <= rightSlot; slot++) {
+      writable(slot);
+    }
+  }
+
+  /**
+   * Find the block and index of the element at a position in the deque. Fixed-size deques compute
+   * this with a shift and a mask; adaptive deques step over whole blocks from the nearer end.
+   *
+   * @param index A position between 0 and size - 1
+   * @return The directory slot in the upper 32 bits and the index within the block in the lower 32
+   */
+  private long locate(int index) {
+    if (maxBlockSize == blockSize || index < size >>> 1) {
+      return locateFrom(leftSlot, leftIndex, index);
+    }
+    int slot = rightSlot;
+    int position = rightIndex - (size - 1 - index);
+    while (position < 0) {
+      slot--;
+      position += blocks[slot].elements.length;
+    }
+    return ((long) slot << 32) | position;
+  }
+
+  /**
+   * Find the block and index of the element a given distance after a starting slot and index.
+   * Fixed-size deques compute this with a shift and a mask; adaptive deques step over whole
+   * blocks.
+   *
+   * @return The directory slot in the upper 32 bits and the index within the block in the lower 32
+   */
+  private long locateFrom(int slot, int index, int distance) {
+    int position = index + distance;
+    if (maxBlockSize == blockSize) {
+      return ((long) (slot + (position >>> blockShift)) << 32) | (position & blockMask);
+    }
+    while (position >= blocks[slot].elements.length) {
+      position -= blocks[slot].elements.length;
+      slot++;
+    }
+    return ((long) slot << 32) | position;
+  }
+
+  @Override
+  public E peekFirst() {
+    if (size == 0) {
+      return null;
+    }
+    return leftBlock.elements[leftIndex];
+  }
+
+  @Override
+  public E peekLast() {
+    if (size == 0) {
+      return null;
+    }
+    return rightBlock.elements[rightIndex];
+  }
+
+  /**
+   * Return the element at a position in the deque, counting from the first element. Fixed-size
+   * deques answer in constant time.
+   *
+   * @param index Position of the element, 0 is the first
+   * @return The element at that position
+   * @throws IndexOutOfBoundsException if index is negative or not less than size
+   */
+  public E get(int index) {
+    Objects.checkIndex(index, size);
+    long location = locate(index);
+    return blocks[(int) (location >>> 32)].elements[(int) location];
+  }
+
+  /**
+   * Replace the element at a position in the deque, counting from the first element.
+   *
+   * @param index Position of the element, 0 is the first
+   * @param element The new element
+   * @return The element previously at that position
+   * @throws IndexOutOfBoundsException if index is negative or not less than size
+   * @throws NullPointerException if element is null
+   */
+  public E set(int index, E element) {
+    if (element == null) {
+      throw new NullPointerException();
     }
+    Objects.checkIndex(index, size);
+    long location = locate(index);
+    E[] elements = writable((int) (location >>> 32)).elements;
+    E old = elements[(int) location];
+    elements[(int) location] = element;
+    return old;
+  }
 
-    /**
-     * Decrement the cursor, crossing a block boundary if necessary.
-     *
-     * @return A new cursor at the previous position, or null if there is no previous position.
-     */
-    private Cursor prev() {
-      if (index == 0) { // We need to cross a block boundary
-        if (block.prev == null) {
-          return null;
-        } else {
-          return new Cursor(block.prev, BLOCK_SIZE - 1);
-        }
-      } else { // Just move one spot back in the current block.
-        return new Cursor(block, index - 1);
-      }
-    }
+  /**
+   * Return a fixed-size, random-access List view of this deque. The view reads and writes through
+   * to the deque and reflects later offers and polls; it does not support adding or removing
+   * elements.
+   *
+   * @return A List view backed by this deque
+   */
+  public List<E> asList() {
+    return new ListView();
+  }
 
+  /**
+   * List view used by asList.
+   */
+  private class ListView extends AbstractList<E> implements RandomAccess {
 
+    @Override
+    public E get(int index) {
+      return HybridDeque.this.get(index);
+    }
 
-    /**
-     * Return the element stored at this cursor.
-     */
-    public E get() {
-      return block.elements[index];
+    @Override
+    public E set(int index, E element) {
+      return HybridDeque.this.set(index, element);
     }
 
-    /**
-     * Set the element at this cursor.
-     */
-    public void set(E item) {
-      block.elements[index] = item;
+    @Override
+    public int size() {
+      return size;
     }
   }
 
   /**
-   * Default Constructor.
+   * Return an immutable copy of this deque in constant time. The snapshot shares its blocks with
+   * this deque; afterwards this deque copies a block the first time it writes to it, so later
+   * changes are never visible in the snapshot.
+   *
+   * @return A Deque holding the current elements that throws an UnsupportedOperationException on
+   *         any attempt to change it
    */
-  public HybridDeque() {
-    Block blck = new Block(null, null);
-    leftCursor = new Cursor(blck, CENTER + 1);
-    rightCursor = new Cursor(blck, CENTER);
-
-    this.size = 0;
+  public Deque<E> snapshot() {
+    Snapshot snapshot = new Snapshot();
+    generation++;
+    directoryShared = true;
+    return snapshot;
   }
 
+  /**
+   * Read-only view of the blocks and directory as they were when snapshot() was called. It walks
+   * the shared directory only, since the live deque may still relink the shared blocks.
+   */
+  private class Snapshot extends AbstractDeque<E> {
+    private final Block[] directory = blocks;
+    private final int first = leftSlot;
+    private final int firstIndex = leftIndex;
+    private final int last = rightSlot;
+    private final int lastIndex = rightIndex;
+    private final int count = size;
 
-  @Override
-  public boolean offerFirst(E e) {
-    if (e == null) {
-      throw new NullPointerException();
+    @Override
+    public boolean offerFirst(E e) {
+      throw new UnsupportedOperationException();
     }
 
-    if (leftCursor.prev() == null) {
-      // Make new Cursor
-      Block block = new Block(null, leftCursor.block);
-      Cursor newCursor = new Cursor(block, BLOCK_SIZE - 1);
-      leftCursor.block.prev = newCursor.block;
-      leftCursor = newCursor;
-      leftCursor.set(e);
-      size++;
+    @Override
+    public boolean offerLast(E e) {
+      throw new UnsupportedOperationException();
+    }
 
-      return true;
+    @Override
+    public E pollFirst() {
+      throw new UnsupportedOperationException();
     }
-    leftCursor = leftCursor.prev();
-    leftCursor.set(e);
 
-    size++;
+    @Override
+    public E pollLast() {
+      throw new UnsupportedOperationException();
+    }
 
-    return true;
-  }
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+      throw new UnsupportedOperationException();
+    }
 
-  @Override
-  public boolean offerLast(E e) {
-    if (e == null) {
-      throw new NullPointerException();
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+      throw new UnsupportedOperationException();
     }
-    if (rightCursor.next() == null) {
-      Block block = new Block(rightCursor.block, null);
-      Cursor newCursor = new Cursor(block, 0);
-      rightCursor.block.next = newCursor.block;
-      rightCursor = newCursor;
-      rightCursor.set(e);
-      size++;
 
-      return true;
+    @Override
+    public boolean remove(Object o) {
+      throw new UnsupportedOperationException();
     }
 
-    rightCursor = rightCursor.next();
-    rightCursor.set(e);
-    size++;
-    return true;
-  }
+    @Override
+    public void clear() {
+      throw new UnsupportedOperationException();
+    }
 
-  @Override
-  public E pollFirst() {
-    if (size == 0) {
-      return null;
+    @Override
+    public E peekFirst() {
+      return count == 0 ? null : directory[first].elements[firstIndex];
     }
 
-    E temp = leftCursor.block.elements[leftCursor.index];
-    leftCursor.set(null);
-    leftCursor = leftCursor.next();
-    size--;
-    return temp;
-  }
+    @Override
+    public E peekLast() {
+      return count == 0 ? null : directory[last].elements[lastIndex];
+    }
 
-  @Override
-  public E pollLast() {
-    if (size == 0) {
-      return null;
+    @Override
+    public int size() {
+      return count;
     }
 
-    E temp = rightCursor.block.elements[rightCursor.index];
-    rightCursor.set(null);
-    rightCursor = rightCursor.prev();
-    size--;
-    return temp;
-  }
+    @Override
+    public Iterator<E> iterator() {
+      return new Iterator<E>() {
+        private int slot = first;
+        private int index = firstIndex;
+        private int remaining = count;
+
+        @Override
+        public boolean hasNext() {
+          return remaining > 0;
+        }
 
-  @Override
-  public E peekFirst() {
-    if (size == 0) {
-      return null;
+        @Override
+        public E next() {
+          if (remaining == 0) {
+            throw new NoSuchElementException();
+          }
+          E[] elements = directory[slot].elements;
+          E temp = elements[index];
+          index++;
+          if (index == elements.length) {
+            slot++;
+            index = 0;
+          }
+          remaining--;
+          return temp;
+        }
+      };
     }
-    return leftCursor.get();
-  }
 
-  @Override
-  public E peekLast() {
-    if (size == 0) {
-      return null;
+    @Override
+    public Iterator<E> descendingIterator() {
+      return new Iterator<E>() {
+        private int slot = last;
+        private int index = lastIndex;
+        private int remaining = count;
+
+        @Override
+        public boolean hasNext() {
+          return remaining > 0;
+        }
+
+        @Override
+        public E next() {
+          if (remaining == 0) {
+            throw new NoSuchElementException();
+          }
+          E temp = directory[slot].elements[index];
+          index--;
+          remaining--;
+          if (index < 0 && remaining > 0) {
+            slot--;
+            index = directory[slot].elements.length - 1;
+          }
+          return temp;
+        }
+      };
     }
-    return rightCursor.get();
   }
 
   @Override
@@ -312,6 +1272,110 @@ public class HybridDeque<E> extends AbstractDeque<E> {
     return false;
   }
 
+  @Override
+  public boolean removeIf(Predicate<? super E> filter) {
+    Objects.requireNonNull(filter);
+    return bulkRemove(filter);
+  }
+
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    Objects.requireNonNull(c);
+    return bulkRemove(e -> c.contains(e));
+  }
+
+  @Override
+  public boolean retainAll(Collection<?> c) {
+    Objects.requireNonNull(c);
+    return bulkRemove(e -> !c.contains(e));
+  }
+
+  /**
+   * Remove every element matching the filter in a single pass. A read position and a write
+   * position walk the blocks from the left; kept elements are copied down to the write position,
+   * then the slots after it are nulled and the emptied blocks at the right end are released.
+   * If the filter throws, the elements it has not seen yet are kept and the deque stays valid.
+   *
+   * @param filter Returns true for elements to remove
+   * @return true if any element was removed
+   */
+  private boolean bulkRemove(Predicate<? super E> filter) {
+    unshareAll();
+    Block readBlock = leftBlock;
+    int readIndex = leftIndex;
+    Block writeBlock = leftBlock;
+    int writeIndex = leftIndex;
+    int kept = 0;
+    Throwable failure = null;
+
+    for (int read = 0; read < size; read++) {
+      E element = readBlock.elements[readIndex];
+      boolean remove = false;
+      if (failure == null) {
+        try {
+          remove = filter.test(element);
+        } catch (Throwable t) {
+          failure = t;
+        }
+      }
+      if (!remove) {
+        if (writeIndex == writeBlock.elements.length) {
+          writeBlock = writeBlock.next;
+          writeIndex = 0;
+        }
+        writeBlock.elements[writeIndex] = element;
+        writeIndex++;
+        kept++;
+      }
+      readIndex++;
+      if (readIndex == readBlock.elements.length && readBlock.next != null) {
+        readBlock = readBlock.next;
+        readIndex = 0;
+      }
+    }
+
+    boolean changed = kept < size;
+    if (changed) {
+      // Null everything from the write position to the old right end
+      Block block = writeBlock;
+      int from = writeIndex;
+      while (block != rightBlock) {
+        Arrays.fill(block.elements, from, block.elements.length, null);
+        block = block.next;
+        from = 0;
+      }
+      Arrays.fill(block.elements, from, rightIndex + 1, null);
+
+      size = kept;
+      modCount++;
+      releaseAfter(writeBlock);
+      if (size == 0) {
+        recenter();
+      } else {
+        rightIndex = writeIndex - 1;
+      }
+    }
+
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure != null) {
+      throw (Error) failure;
+    }
+    return changed;
+  }
+
+  /**
+   * Make the given block the right end block, releasing every block after it. The released blocks
+   * must already be all null. The caller is responsible for rightIndex.
+   *
+   * @param last The new right end block
+   */
+  private void releaseAfter(Block last) {
+    while (rightBlock != last) {
+      dropRightBlock();
+    }
+  }
+
   @Override
   public Iterator<E> descendingIterator() {
     return new CustomIteratorDescending();
@@ -322,6 +1386,11 @@ public class HybridDeque<E> extends AbstractDeque<E> {
     return new CustomIterator();
   }
 
+  @Override
+  public Spliterator<E> spliterator() {
+    return new BlockSpliterator(leftSlot, leftIndex, size, modCount);
+  }
+
   @Override
   public boolean equals(Object other) {
     if (!(other instanceof HybridDeque)) {
@@ -336,18 +1405,297 @@ public class HybridDeque<E> extends AbstractDeque<E> {
       return false;
     }
 
-    Iterator<E> otherdeque = valDeque.iterator();
-    Iterator<E> deque = this.iterator();
-
-    while (otherdeque.hasNext()) {
-      if (!otherdeque.next().equals(deque.next())) {
+    // Compare the longest runs that are contiguous in both deques
+    Block block = leftBlock;
+    int index = leftIndex;
+    Block otherBlock = valDeque.leftBlock;
+    int otherIndex = valDeque.leftIndex;
+    int remaining = size;
+    while (remaining > 0) {
+      int length = Math.min(remaining, Math.min(block.elements.length - index,
+          otherBlock.elements.length - otherIndex));
+      if (!Arrays.equals(block.elements, index, index + length, otherBlock.elements, otherIndex,
+          otherIndex + length)) {
         return false;
       }
+      remaining -= length;
+      index += length;
+      otherIndex += length;
+      if (index == block.elements.length) {
+        block = block.next;
+        index = 0;
+      }
+      if (otherIndex == otherBlock.elements.length) {
+        otherBlock = otherBlock.next;
+        otherIndex = 0;
+      }
     }
 
     return true;
   }
 
+  /**
+   * Returns a hash code computed block by block with the same formula as List.hashCode, so equal
+   * deques have equal hash codes.
+   */
+  @Override
+  public int hashCode() {
+    int hash = 1;
+    Block block = leftBlock;
+    int index = leftIndex;
+    int remaining = size;
+    while (remaining > 0) {
+      int end = Math.min(block.elements.length, index + remaining);
+      for (int i = index; i < end; i++) {
+        hash = 31 * hash + block.elements[i].hashCode();
+      }
+      remaining -= end - index;
+      block = block.next;
+      index = 0;
+    }
+    return hash;
+  }
+
+  @Override
+  public void forEach(Consumer<? super E> action) {
+    Objects.requireNonNull(action);
+    int expectedModCount = modCount;
+    Block block = leftBlock;
+    int index = leftIndex;
+    int remaining = size;
+    while (remaining > 0) {
+      int end = Math.min(block.elements.length, index + remaining);
+      for (int i = index; i < end; i++) {
+        action.accept(block.elements[i]);
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      remaining -= end - index;
+      block = block.next;
+      index = 0;
+    }
+  }
+
+  @Override
+  public Object[] toArray() {
+    return copyInto(new Object[size]);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T[] toArray(T[] a) {
+    if (a.length < size) {
+      a = (T[]) Array.newInstance(a.getClass().getComponentType(), size);
+    } else if (a.length > size) {
+      a[size] = null;
+    }
+    return copyInto(a);
+  }
+
+  /**
+   * Copy the elements, in order, into the start of an array that is at least size long, one block
+   * segment at a time.
+   *
+   * @param dst The array to fill
+   * @return dst
+   */
+  private <T> T[] copyInto(T[] dst) {
+    Block block = leftBlock;
+    int index = leftIndex;
+    int copied = 0;
+    while (copied < size) {
+      int length = Math.min(block.elements.length - index, size - copied);
+      System.arraycopy(block.elements, index, dst, copied, length);
+      copied += length;
+      block = block.next;
+      index = 0;
+    }
+    return dst;
+  }
+
+  /**
+   * Write a snapshot of this deque to a channel: a header with the block sizes and size, then one
+   * fixed-width record per element, front to back. Elements are encoded block by block into a
+   * batch of buffers that is handed to the channel with one gathering write when it supports them.
+   * The batch is no larger than the snapshot, and is only off-heap for a FileChannel, which would
+   * otherwise copy heap buffers through a temporary direct one. The deque is not modified.
+   *
+   * @param channel The channel to write to
+   * @param codec Codec for the elements
+   * @throws IOException if the channel cannot be written
+   */
+  public void writeSnapshot(WritableByteChannel channel, RecordCodec<? super E> codec)
+      throws IOException {
+    Objects.requireNonNull(channel);
+    int width = codec.width();
+    long totalBytes = SNAPSHOT_HEADER_BYTES + (long) size * width;
+    int chunkBytes = (int) Math.min(totalBytes,
+        Math.max(SNAPSHOT_HEADER_BYTES + width, SNAPSHOT_CHUNK_BYTES / width * width));
+    // The first chunk also holds the header
+    long laterRecords = Math.max(0, size - (chunkBytes - SNAPSHOT_HEADER_BYTES) / width);
+    int perChunk = chunkBytes / width;
+    ByteBuffer[] batch = new ByteBuffer[(int) Math.min(SNAPSHOT_BATCH,
+        1 + (laterRecords + perChunk - 1) / perChunk)];
+    for (int i = 0; i < batch.length; i++) {
+      batch[i] = ioBuffer(channel, chunkBytes);
+    }
+
+    int expectedModCount = modCount;
+    int filled = 0;
+    ByteBuffer buffer = batch[0];
+    buffer.putInt(SNAPSHOT_MAGIC).putInt(width).putInt(blockSize).putInt(maxBlockSize).putInt(size);
+    Block block = leftBlock;
+    int index = leftIndex;
+    int remaining = size;
+    while (remaining > 0) {
+      int end = Math.min(block.elements.length, index + remaining);
+      for (int i = index; i < end; i++) {
+        if (buffer.remaining() < width) {
+          buffer.flip();
+          filled++;
+          if (filled == batch.length) {
+            writeFully(channel, batch, filled);
+            filled = 0;
+          }
+          buffer = batch[filled];
+          buffer.clear();
+        }
+        codec.write(buffer, buffer.position(), block.elements[i]);
+        buffer.position(buffer.position() + width);
+      }
+      remaining -= end - index;
+      block = block.next;
+      index = 0;
+    }
+    buffer.flip();
+    writeFully(channel, batch, filled + 1);
+    if (modCount != expectedModCount) {
+      throw new ConcurrentModificationException();
+    }
+  }
+
+  /**
+   * Allocate a buffer for channel I/O: direct for a FileChannel, on the heap otherwise.
+   */
+  private static ByteBuffer ioBuffer(Channel channel, int bytes) {
+    return channel instanceof FileChannel ? ByteBuffer.allocateDirect(bytes)
+        : ByteBuffer.allocate(bytes);
+  }
+
+  /**
+   * Write every byte remaining in the first count buffers, with gathering writes if possible.
+   */
+  private static void writeFully(WritableByteChannel channel, ByteBuffer[] buffers, int count)
+      throws IOException {
+    if (channel instanceof GatheringByteChannel) {
+      long remaining = 0;
+      for (int i = 0; i < count; i++) {
+        remaining += buffers[i].remaining();
+      }
+      while (remaining > 0) {
+        remaining -= ((GatheringByteChannel) channel).write(buffers, 0, count);
+      }
+    } else {
+      for (int i = 0; i < count; i++) {
+        while (buffers[i].hasRemaining()) {
+          channel.write(buffers[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Read a snapshot written by writeSnapshot. The new deque has the block sizes recorded in the
+   * snapshot. The records are decoded a chunk at a time and appended one block segment at a time,
+   * and the first chunk is read before the deque is created, so memory grows only with the records
+   * actually read and a corrupt or truncated snapshot fails with an IOException rather than a huge
+   * allocation.
+   *
+   * @param channel The channel to read from, positioned at the start of the snapshot
+   * @param codec Codec for the elements, with the same record width the snapshot was written with
+   * @return A new deque with the elements of the snapshot
+   * @throws IOException if the channel cannot be read, or does not hold a valid, complete snapshot
+   *         for this codec
+   */
+  public static <E> HybridDeque<E> readSnapshot(ReadableByteChannel channel, RecordCodec<E> codec)
+      throws IOException {
+    Objects.requireNonNull(channel);
+    int width = codec.width();
+    ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+    readFully(channel, header);
+    header.flip();
+    if (header.getInt() != SNAPSHOT_MAGIC || header.getInt() != width) {
+      throw new IOException("Not a snapshot for records of " + width + " bytes");
+    }
+    int blockSize = header.getInt();
+    int maxBlockSize = header.getInt();
+    int size = header.getInt();
+    if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE || maxBlockSize < blockSize
+        || maxBlockSize > MAX_BLOCK_SIZE) {
+      throw new StreamCorruptedException("Illegal snapshot block sizes: " + blockSize + ", "
+          + maxBlockSize);
+    }
+    if (size < 0) {
+      throw new StreamCorruptedException("Illegal snapshot size: " + size);
+    }
+    if (channel instanceof SeekableByteChannel) {
+      SeekableByteChannel seekable = (SeekableByteChannel) channel;
+      if (seekable.size() - seekable.position() < (long) size * width) {
+        throw new IOException("Snapshot is truncated");
+      }
+    }
+
+    // Read the first chunk before allocating the first block, so a header claiming huge blocks
+    // on a stream that holds nothing fails without allocating them
+    int batch = Math.min(size, Math.max(1, SNAPSHOT_CHUNK_BYTES / width));
+    ByteBuffer buffer = ioBuffer(channel, batch * width);
+    readFully(channel, buffer);
+    HybridDeque<E> deque = new HybridDeque<E>(blockSize, maxBlockSize);
+    if (size > 0) {
+      deque.load(channel, codec, size, buffer, batch);
+    }
+    return deque;
+  }
+
+  /**
+   * Append size records to an empty deque, batch records at a time. The buffer already holds the
+   * first batch; the rest are read from the channel.
+   */
+  private void load(ReadableByteChannel channel, RecordCodec<E> codec, int size,
+      ByteBuffer buffer, int batch) throws IOException {
+    int width = codec.width();
+    @SuppressWarnings("unchecked")
+    E[] staging = (E[]) new Object[batch];
+    int remaining = size;
+    int count = batch;
+    while (true) {
+      for (int i = 0; i < count; i++) {
+        staging[i] = codec.read(buffer, i * width);
+      }
+      appendAll(staging, 0, count);
+      remaining -= count;
+      if (remaining == 0) {
+        return;
+      }
+      count = Math.min(remaining, batch);
+      buffer.clear().limit(count * width);
+      readFully(channel, buffer);
+    }
+  }
+
+  /**
+   * Read from a channel until the buffer has no room left, or throw if the channel ends first.
+   */
+  private static void readFully(ReadableByteChannel channel, ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new IOException("Snapshot is truncated");
+      }
+    }
+  }
+
   @Override
   public int size() {
     return size;
@@ -355,34 +1703,55 @@ public class HybridDeque<E> extends AbstractDeque<E> {
 
   @Override
   public void clear() {
-    Block clearBlock = new Block(null, null);
-    leftCursor = new Cursor(clearBlock, CENTER + 1);
-    rightCursor = new Cursor(clearBlock, CENTER);
+    ownDirectory();
+    Block block = leftBlock;
+    while (block != null) {
+      Block next = block.next;
+      if (block.generation == generation) {
+        Arrays.fill(block.elements, null);
+      }
+      if (block != leftBlock) {
+        freeBlock(block);
+      }
+      block = next;
+    }
+    leftBlock.next = null;
+    Arrays.fill(blocks, leftSlot + 1, rightSlot + 1, null);
     size = 0;
+    modCount++;
+    recenter();
   }
 
 
   private class CustomIterator implements Iterator<E> {
-    private Cursor removeCursorIndex;
-    private Cursor cursor = leftCursor;
+    private Block block = leftBlock;
+    private int index = leftIndex;
+    private int nextPosition = 0;
+    private int expectedModCount = modCount;
 
     private boolean removeAllowed = false;
 
     @Override
     public boolean hasNext() {
-      return cursor != null && cursor.get() != null;
-      // cursor != null && cursor.get() != null
+      return nextPosition < size;
     }
 
     @Override
     public E next() {
-      if (!hasNext()) {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (nextPosition >= size) {
         throw new NoSuchElementException();
       }
       removeAllowed = true;
-      E temp = cursor.get();
-      removeCursorIndex = cursor;
-      cursor = cursor.next();
+      E temp = block.elements[index];
+      index++;
+      if (index == block.elements.length) {
+        block = block.next;
+        index = 0;
+      }
+      nextPosition++;
 
       return temp;
     }
@@ -392,41 +1761,57 @@ public class HybridDeque<E> extends AbstractDeque<E> {
       if (!removeAllowed) {
         throw new IllegalStateException();
       }
-      removeCursorIndex.set(null);
-      removeCursorIndex = null;
-      size--;
-      removeHelper(leftCursor);
-      removeAllowed = false;
-      rightCursor = rightCursor.prev();
-      // TA help right here with an Edge Case
-      // TA Riley White I think helped here
-      if (cursor != null) {
-        cursor = cursor.prev();
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
       }
+      // The element just returned is the one before the iterator position
+      nextPosition--;
+      delete(nextPosition);
+      if (nextPosition < size) {
+        // TA help right here with an Edge Case
+        // TA Riley White I think helped here
+        // Either side may have moved (or been copied away from a snapshot), so look the next
+        // element up again; it is now where the removed one was
+        long location = locate(nextPosition);
+        block = blocks[(int) (location >>> 32)];
+        index = (int) location;
+      }
+      expectedModCount = modCount;
+      removeAllowed = false;
     }
   }
 
   private class CustomIteratorDescending implements Iterator<E> {
-    private Cursor cursor = rightCursor;
-    private Cursor removeCursorIndex;
+    private Block block = rightBlock;
+    private int index = rightIndex;
+    private int nextPosition = size - 1;
+    private int expectedModCount = modCount;
     private boolean removeAllowed = false;
 
     @Override
     public boolean hasNext() {
-      return cursor != null && cursor.get() != null;
+      return nextPosition >= 0;
 
     }
 
     @Override
     public E next() {
-      if (!hasNext()) {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (nextPosition < 0) {
         throw new NoSuchElementException();
       }
-      removeCursorIndex = cursor;
       removeAllowed = true;
-      E temp = cursor.get();
-      cursor = cursor.prev();
-      // New Cursor set that as remove Cursor as holding place
+      E temp = block.elements[index];
+      index--;
+      if (index < 0) {
+        block = block.prev;
+        if (block != null) {
+          index = block.elements.length - 1;
+        }
+      }
+      nextPosition--;
       return temp;
     }
 
@@ -435,38 +1820,170 @@ public class HybridDeque<E> extends AbstractDeque<E> {
       if (!removeAllowed) {
         throw new IllegalStateException();
       }
-      removeCursorIndex.set(null);
-      removeCursorIndex = null;
-      size--;
-      removeHelper(leftCursor);
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      delete(nextPosition + 1);
+      if (nextPosition >= 0) {
+        // Either side may have moved (or been copied away from a snapshot), so look it up again
+        long location = locate(nextPosition);
+        block = blocks[(int) (location >>> 32)];
+        index = (int) location;
+      }
+      expectedModCount = modCount;
       removeAllowed = false;
-      rightCursor = rightCursor.prev();
 
     }
   }
 
-  private void removeHelper(Cursor list) {
-    boolean remover = false;
-    int itemsDone = 0;
-    while (itemsDone < size) {
-      if (list.get() == null) {
-        remover = true;
+  /**
+   * Spliterator that walks the block directory directly. Splits happen at block boundaries, halving
+   * the range of directory slots, and every part knows its exact size.
+   */
+  private class BlockSpliterator implements Spliterator<E> {
+    private int slot;
+    private int index;
+    private int remaining;
+    private final int expectedModCount;
+
+    /**
+     * Create a spliterator over remaining elements starting at blocks[slot].elements[index].
+     */
+    BlockSpliterator(int slot, int index, int remaining, int expectedModCount) {
+      this.slot = slot;
+      this.index = index;
+      this.remaining = remaining;
+      this.expectedModCount = expectedModCount;
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+      if (remaining == 0) {
+        return null;
+      }
+      long end = locateFrom(slot, index, remaining - 1);
+      int lastSlot = (int) (end >>> 32);
+      if (lastSlot == slot) {
+        return null;
+      }
+      // The prefix takes the slots before mid, this spliterator keeps the rest
+      int mid = (slot + lastSlot + 1) >>> 1;
+      int count;
+      if (maxBlockSize == blockSize) {
+        count = ((mid - slot) << blockShift) - index;
+      } else {
+        count = blocks[slot].elements.length - index;
+        for (int s = slot + 1; s < mid; s++) {
+          count += blocks[s].elements.length;
+        }
       }
+      BlockSpliterator prefix = new BlockSpliterator(slot, index, count, expectedModCount);
+      slot = mid;
+      index = 0;
+      remaining -= count;
+      return prefix;
+    }
 
-      if (remover) {
-        // System.out.println(list.block.elements[list.index]);
-        if (list.index + 1 >= BLOCK_SIZE) {
-          list.set(list.next().block.elements[list.next().index]);
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+      Objects.requireNonNull(action);
+      if (remaining == 0) {
+        return false;
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      E[] elements = blocks[slot].elements;
+      E element = elements[index];
+      index++;
+      if (index == elements.length) {
+        slot++;
+        index = 0;
+      }
+      remaining--;
+      action.accept(element);
+      return true;
+    }
 
-        } else {
-          list.set(list.block.elements[list.index + 1]);
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+      Objects.requireNonNull(action);
+      int s = slot;
+      int i = index;
+      int left = remaining;
+      remaining = 0;
+      while (left > 0) {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
         }
+        E[] elements = blocks[s].elements;
+        int end = Math.min(elements.length, i + left);
+        for (int k = i; k < end; k++) {
+          action.accept(elements[k]);
+        }
+        left -= end - i;
+        s++;
+        i = 0;
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
       }
-      list = list.next();
-      itemsDone++;
     }
-    list.set(null);
 
+    @Override
+    public long estimateSize() {
+      return remaining;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+          | Spliterator.NONNULL;
+    }
+  }
+
+  /**
+   * Remove the element at a position in the deque by shifting the elements on whichever side of it
+   * is shorter one slot toward the gap, one block segment at a time. Removing near either end is
+   * therefore proportional to the distance to that end.
+   *
+   * @param position Position of the element to remove, 0 is the first
+   * @return true if the elements after the position moved back, false if the elements before it
+   *         moved forward
+   */
+  private boolean delete(int position) {
+    long location = locate(position);
+    int slot = (int) (location >>> 32);
+    int index = (int) location;
+
+    if (position < size - 1 - position) {
+      // Shift the front part right; the old first slot ends up holding a duplicate
+      while (slot != leftSlot) {
+        E[] elements = writable(slot).elements;
+        E[] previous = blocks[slot - 1].elements;
+        System.arraycopy(elements, 0, elements, 1, index);
+        elements[0] = previous[previous.length - 1];
+        slot--;
+        index = previous.length - 1;
+      }
+      E[] elements = writable(slot).elements;
+      System.arraycopy(elements, leftIndex, elements, leftIndex + 1, index - leftIndex);
+      pollFirst();
+      return false;
+    }
+
+    // Shift the back part left; the old last slot ends up holding a duplicate
+    while (slot != rightSlot) {
+      E[] elements = writable(slot).elements;
+      System.arraycopy(elements, index + 1, elements, index, elements.length - 1 - index);
+      elements[elements.length - 1] = blocks[slot + 1].elements[0];
+      slot++;
+      index = 0;
+    }
+    E[] elements = writable(slot).elements;
+    System.arraycopy(elements, index + 1, elements, index, rightIndex - index);
+    pollLast();
+    return true;
   }
 
   // ----------------------------------------------------
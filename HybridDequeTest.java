@@ -1,6 +1,27 @@
 import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Predicate;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -682,6 +703,1068 @@ class HybridDequeTest {
     }
   }
 
-}
+  /**
+   * Bytes allocated so far by the current thread.
+   */
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Push and pop across block boundaries at both ends and iterate the whole deque.
+   */
+  private static long churn(HybridDeque<Integer> deque, Integer[] values, int rounds) {
+    long sum = 0;
+    for (int r = 0; r < rounds; r++) {
+      for (int i = 0; i < values.length; i++) {
+        deque.offerLast(values[i]);
+        deque.offerFirst(values[i]);
+      }
+      for (Integer value : deque) {
+        sum += value;
+      }
+      for (int i = 0; i < values.length; i++) {
+        sum += deque.pollFirst();
+        sum += deque.pollLast();
+      }
+    }
+    return sum;
+  }
+
+  @Test
+  void testSteadyStateAllocationFree() {
+    HybridDeque<Integer> deque = new HybridDeque<Integer>();
+    // Each round grows past the default spare cap, so keep every drained block
+    deque.setMaxSpareBlocks(64);
+    Integer[] values = new Integer[100];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i;
+    }
+
+    // Warm up so the blocks exist and the loop is compiled
+    churn(deque, values, 2000);
+
+    int rounds = 2000;
+    long before = allocatedBytes();
+    churn(deque, values, rounds);
+    long allocated = allocatedBytes() - before;
+
+    // Only the one iterator per round may be allocated; no blocks and no directories
+    assertTrue(allocated <= rounds * 64L, "allocated " + allocated + " bytes in " + rounds
+        + " rounds");
+    assertEquals(0, deque.size());
+  }
+
+  @Test
+  void testFifoReusesDrainedBlocks() {
+    HybridDeque<Integer> deque = new HybridDeque<Integer>();
+    Integer[] values = new Integer[100];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i;
+      deque.offerLast(values[i]);
+    }
+
+    // Producer/consumer: the deque slides right forever but never holds more than 100 elements
+    for (int r = 0; r < 2000; r++) {
+      for (int i = 0; i < values.length; i++) {
+        deque.offerLast(values[i]);
+        assertEquals(values[i], deque.pollFirst());
+      }
+    }
+
+    long before = allocatedBytes();
+    for (int r = 0; r < 2000; r++) {
+      for (int i = 0; i < values.length; i++) {
+        deque.offerLast(values[i]);
+        deque.pollFirst();
+      }
+    }
+    long allocated = allocatedBytes() - before;
+
+    // No blocks may be allocated; the allowance only covers the measurement itself
+    assertTrue(allocated < 4096, "allocated " + allocated + " bytes");
+    assertEquals(100, deque.size());
+    assertEquals(values[0], deque.peekFirst());
+    assertEquals(values[99], deque.peekLast());
+  }
+
+  @Test
+  void testMaxSpareBlocks() {
+    HybridDeque<String> deque = new HybridDeque<String>();
+    assertThrows(IllegalArgumentException.class, () -> {
+      deque.setMaxSpareBlocks(-1);
+    });
+
+    for (int i = 0; i < 100; i++) {
+      deque.offerLast("A" + i);
+    }
+    for (int i = 0; i < 100; i++) {
+      deque.pollFirst();
+    }
+    // Shrinking the pool after blocks have been released
+    deque.setMaxSpareBlocks(0);
+
+    for (int i = 0; i < 50; i++) {
+      deque.offerFirst("B" + i);
+      deque.offerLast("C" + i);
+    }
+    assertEquals(100, deque.size());
+    assertEquals("B49", deque.pollFirst());
+    assertEquals("C49", deque.pollLast());
+
+    deque.clear();
+    assertEquals(0, deque.size());
+    assertFalse(deque.iterator().hasNext());
+    deque.offerFirst("D");
+    deque.offerLast("E");
+    assertEquals("D", deque.peekFirst());
+    assertEquals("E", deque.peekLast());
+  }
+
+  /**
+   * Apply the same random mix of end operations to a HybridDeque and an ArrayDeque and check that
+   * they agree after every step.
+   */
+  private static void checkAgainstArrayDeque(HybridDeque<Integer> deque, long seed, int steps) {
+    ArrayDeque<Integer> expected = new ArrayDeque<Integer>();
+    Random random = new Random(seed);
+    for (int i = 0; i < steps; i++) {
+      switch (random.nextInt(4)) {
+        case 0:
+          deque.offerFirst(i);
+          expected.offerFirst(i);
+          break;
+        case 1:
+          deque.offerLast(i);
+          expected.offerLast(i);
+          break;
+        case 2:
+          assertEquals(expected.pollFirst(), deque.pollFirst());
+          break;
+        default:
+          assertEquals(expected.pollLast(), deque.pollLast());
+          break;
+      }
+      assertEquals(expected.size(), deque.size());
+      assertEquals(expected.peekFirst(), deque.peekFirst());
+      assertEquals(expected.peekLast(), deque.peekLast());
+    }
+    assertArrayEquals(expected.toArray(), deque.toArray());
+  }
+
+  @Test
+  void testPerInstanceBlockSize() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new HybridDeque<String>(0);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new HybridDeque<String>(-8);
+    });
+
+    // Tiny, odd and large block sizes living side by side
+    HybridDeque<Integer> tiny = new HybridDeque<Integer>(1);
+    HybridDeque<Integer> odd = new HybridDeque<Integer>(5);
+    HybridDeque<Integer> large = new HybridDeque<Integer>(1000);
+    checkAgainstArrayDeque(tiny, 1, 5000);
+    checkAgainstArrayDeque(odd, 2, 5000);
+    checkAgainstArrayDeque(large, 3, 5000);
+
+    // Changing the default only affects deques created afterwards
+    HybridDeque<Integer> before = new HybridDeque<Integer>();
+    for (int i = 0; i < 20; i++) {
+      before.offerLast(i);
+    }
+    HybridDeque.setBlockSize(3);
+    try {
+      HybridDeque<Integer> after = new HybridDeque<Integer>();
+      for (int i = 0; i < 20; i++) {
+        before.offerLast(i);
+        after.offerFirst(i);
+      }
+      assertEquals(40, before.size());
+      assertEquals(Integer.valueOf(19), before.peekLast());
+      assertEquals(Integer.valueOf(19), after.peekFirst());
+      checkAgainstArrayDeque(new HybridDeque<Integer>(), 4, 2000);
+    } finally {
+      HybridDeque.setBlockSize(8);
+    }
+  }
+
+  @Test
+  void testAdaptiveBlockGrowth() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new HybridDeque<String>(64, 8);
+    });
+
+    HybridDeque<Integer> deque = new HybridDeque<Integer>(4, 1024);
+    ArrayDeque<Integer> expected = new ArrayDeque<Integer>();
+    for (int i = 0; i < 100000; i++) {
+      if (i % 3 == 0) {
+        deque.offerFirst(i);
+        expected.offerFirst(i);
+      } else {
+        deque.offerLast(i);
+        expected.offerLast(i);
+      }
+    }
+    assertArrayEquals(expected.toArray(), deque.toArray());
+
+    // Drain most of it from both ends, then grow again with smaller blocks
+    for (int i = 0; i < 49990; i++) {
+      assertEquals(expected.pollFirst(), deque.pollFirst());
+      assertEquals(expected.pollLast(), deque.pollLast());
+    }
+    assertEquals(20, deque.size());
+    for (int i = 0; i < 1000; i++) {
+      deque.offerFirst(-i);
+      expected.offerFirst(-i);
+    }
+    assertArrayEquals(expected.toArray(), deque.toArray());
+
+    Iterator<Integer> descending = deque.descendingIterator();
+    Iterator<Integer> expectedDescending = expected.descendingIterator();
+    while (expectedDescending.hasNext()) {
+      assertEquals(expectedDescending.next(), descending.next());
+    }
+    assertFalse(descending.hasNext());
+
+    checkAgainstArrayDeque(new HybridDeque<Integer>(2, 64), 5, 20000);
+  }
+
+  /**
+   * Check get and the List view against a reference list.
+   */
+  private static void checkIndexed(HybridDeque<Integer> deque, List<Integer> expected) {
+    assertEquals(expected.size(), deque.size());
+    List<Integer> view = deque.asList();
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), deque.get(i));
+      assertEquals(expected.get(i), view.get(i));
+    }
+  }
+
+  @Test
+  void testIndexedAccess() {
+    HybridDeque<Integer> empty = new HybridDeque<Integer>();
+    assertThrows(IndexOutOfBoundsException.class, () -> {
+      empty.get(0);
+    });
+
+    HybridDeque<Integer> fixed = new HybridDeque<Integer>(4);
+    HybridDeque<Integer> adaptive = new HybridDeque<Integer>(2, 256);
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 3000; i++) {
+      if (i % 2 == 0) {
+        fixed.offerFirst(i);
+        adaptive.offerFirst(i);
+        expected.add(0, i);
+      } else {
+        fixed.offerLast(i);
+        adaptive.offerLast(i);
+        expected.add(i);
+      }
+    }
+    checkIndexed(fixed, expected);
+    checkIndexed(adaptive, expected);
+
+    // Sliding window: drop from the front and check random peeks stay in place
+    for (int i = 0; i < 1000; i++) {
+      fixed.pollFirst();
+      adaptive.pollFirst();
+      expected.remove(0);
+      fixed.offerLast(-i);
+      adaptive.offerLast(-i);
+      expected.add(-i);
+    }
+    checkIndexed(fixed, expected);
+    checkIndexed(adaptive, expected);
+
+    assertEquals(expected.set(1234, 7), fixed.set(1234, 7));
+    assertEquals(Integer.valueOf(7), fixed.asList().set(1234, 8));
+    adaptive.asList().set(1234, 8);
+    expected.set(1234, 8);
+    checkIndexed(fixed, expected);
+    checkIndexed(adaptive, expected);
+
+    assertThrows(IndexOutOfBoundsException.class, () -> {
+      fixed.get(-1);
+    });
+    assertThrows(IndexOutOfBoundsException.class, () -> {
+      fixed.set(fixed.size(), 1);
+    });
+    assertThrows(NullPointerException.class, () -> {
+      fixed.set(0, null);
+    });
+    assertThrows(UnsupportedOperationException.class, () -> {
+      fixed.asList().add(1);
+    });
+  }
+
+  @Test
+  void testInteriorRemovalFromBothSides() {
+    Random random = new Random(6);
+    HybridDeque<Integer> fixed = new HybridDeque<Integer>(4);
+    HybridDeque<Integer> adaptive = new HybridDeque<Integer>(2, 64);
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 2000; i++) {
+      fixed.offerLast(i);
+      adaptive.offerLast(i);
+      expected.add(i);
+    }
+
+    // Ascending iterator removing a random third of the elements
+    Iterator<Integer> it = fixed.iterator();
+    Iterator<Integer> adaptiveIt = adaptive.iterator();
+    Iterator<Integer> expectedIt = expected.iterator();
+    while (expectedIt.hasNext()) {
+      Integer value = expectedIt.next();
+      assertEquals(value, it.next());
+      assertEquals(value, adaptiveIt.next());
+      if (random.nextInt(3) == 0) {
+        expectedIt.remove();
+        it.remove();
+        adaptiveIt.remove();
+      }
+    }
+    assertFalse(it.hasNext());
+    assertFalse(adaptiveIt.hasNext());
+    checkIndexed(fixed, expected);
+    checkIndexed(adaptive, expected);
+
+    // Descending iterator removing another random third
+    Iterator<Integer> descending = fixed.descendingIterator();
+    Iterator<Integer> adaptiveDescending = adaptive.descendingIterator();
+    for (int i = expected.size() - 1; i >= 0; i--) {
+      assertEquals(expected.get(i), descending.next());
+      assertEquals(expected.get(i), adaptiveDescending.next());
+      if (random.nextInt(3) == 0) {
+        expected.remove(i);
+        descending.remove();
+        adaptiveDescending.remove();
+      }
+    }
+    assertFalse(descending.hasNext());
+    assertFalse(adaptiveDescending.hasNext());
+    checkIndexed(fixed, expected);
+    checkIndexed(adaptive, expected);
+
+    // Occurrences near each end
+    for (int i = 0; i < 50; i++) {
+      Integer near = expected.get(expected.size() - 3);
+      assertTrue(fixed.removeFirstOccurrence(near));
+      assertTrue(adaptive.removeLastOccurrence(near));
+      expected.remove(near);
+      near = expected.get(2);
+      assertTrue(fixed.removeLastOccurrence(near));
+      assertTrue(adaptive.removeFirstOccurrence(near));
+      expected.remove(near);
+    }
+    checkIndexed(fixed, expected);
+    checkIndexed(adaptive, expected);
+    assertEquals(expected.get(0), fixed.peekFirst());
+    assertEquals(expected.get(expected.size() - 1), adaptive.peekLast());
+  }
+
+  @Test
+  void testBulkRemoval() {
+    HybridDeque<Integer> fixed = new HybridDeque<Integer>(4);
+    HybridDeque<Integer> adaptive = new HybridDeque<Integer>(2, 128);
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 5000; i++) {
+      fixed.offerFirst(i);
+      adaptive.offerFirst(i);
+      expected.add(0, i);
+    }
+
+    assertFalse(fixed.removeIf(e -> e < 0));
+    assertTrue(fixed.removeIf(e -> e % 3 == 0));
+    assertTrue(adaptive.removeIf(e -> e % 3 == 0));
+    expected.removeIf(e -> e % 3 == 0);
+    checkIndexed(fixed, expected);
+    checkIndexed(adaptive, expected);
+
+    List<Integer> drop = Arrays.asList(1, 2, 4, 4999, 4998, 2500);
+    assertTrue(fixed.removeAll(new HashSet<Integer>(drop)));
+    expected.removeAll(drop);
+    checkIndexed(fixed, expected);
+
+    HashSet<Integer> keep = new HashSet<Integer>();
+    for (int i = 0; i < 5000; i += 7) {
+      keep.add(i);
+    }
+    assertTrue(fixed.retainAll(keep));
+    expected.retainAll(keep);
+    checkIndexed(fixed, expected);
+
+    // The deque keeps working at both ends after compaction
+    fixed.offerLast(-1);
+    fixed.offerFirst(-2);
+    expected.add(-1);
+    expected.add(0, -2);
+    checkIndexed(fixed, expected);
+
+    // A failing filter keeps everything it did not get to. Elements run from high to low, so
+    // 2800 is tested before the failure at 700 and 14 never is.
+    List<Integer> before = new ArrayList<Integer>(expected);
+    assertThrows(IllegalStateException.class, () -> {
+      fixed.removeIf(e -> {
+        if (e == 700) {
+          throw new IllegalStateException();
+        }
+        return e == 14 || e == 2800;
+      });
+    });
+    before.remove(Integer.valueOf(2800));
+    checkIndexed(fixed, before);
+
+    assertTrue(adaptive.removeIf(e -> true));
+    assertEquals(0, adaptive.size());
+    assertNull(adaptive.peekLast());
+    assertFalse(adaptive.iterator().hasNext());
+    checkAgainstArrayDeque(adaptive, 7, 2000);
+
+    assertThrows(NullPointerException.class, () -> {
+      fixed.removeIf(null);
+    });
+  }
+
+  @Test
+  void testRemoveIfAllocationFree() {
+    HybridDeque<Integer> deque = new HybridDeque<Integer>();
+    Integer[] values = new Integer[100000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i;
+    }
+    // One predicate for warm-up and measurement, so linking the lambda is not measured
+    Predicate<Integer> even = e -> (e & 1) == 0;
+    for (int r = 0; r < 20; r++) {
+      for (Integer value : values) {
+        deque.offerLast(value);
+      }
+      deque.removeIf(even);
+      deque.clear();
+    }
+
+    for (Integer value : values) {
+      deque.offerLast(value);
+    }
+    long before = allocatedBytes();
+    deque.removeIf(even);
+    long allocated = allocatedBytes() - before;
+
+    assertTrue(allocated < 4096, "allocated " + allocated + " bytes");
+    assertEquals(values.length / 2, deque.size());
+    assertEquals(Integer.valueOf(1), deque.peekFirst());
+    assertEquals(values[values.length - 1], deque.peekLast());
+  }
+
+  @Test
+  void testBulkAdd() {
+    HybridDeque<Integer> fixed = new HybridDeque<Integer>(4);
+    HybridDeque<Integer> adaptive = new HybridDeque<Integer>(2, 128);
+    List<Integer> expected = new ArrayList<Integer>();
+
+    Integer[] batch = new Integer[1000];
+    for (int i = 0; i < batch.length; i++) {
+      batch[i] = i;
+    }
+    assertTrue(fixed.offerAll(batch, 10, 500));
+    assertTrue(adaptive.offerAll(batch, 10, 500));
+    expected.addAll(Arrays.asList(batch).subList(10, 510));
+    checkIndexed(fixed, expected);
+    checkIndexed(adaptive, expected);
+
+    List<Integer> front = Arrays.asList(batch).subList(600, 1000);
+    assertTrue(fixed.addAllFirst(front));
+    assertTrue(adaptive.addAllFirst(front));
+    expected.addAll(0, front);
+    checkIndexed(fixed, expected);
+    checkIndexed(adaptive, expected);
+
+    assertTrue(fixed.addAll(fixed));
+    assertTrue(adaptive.addAll(expected));
+    expected.addAll(new ArrayList<Integer>(expected));
+    checkIndexed(fixed, expected);
+    checkIndexed(adaptive, expected);
+
+    assertFalse(fixed.offerAll(batch, 0, 0));
+    assertFalse(fixed.addAllFirst(new ArrayList<Integer>()));
+
+    // Bad ranges and nulls leave the deque untouched
+    assertThrows(IndexOutOfBoundsException.class, () -> {
+      fixed.offerAll(batch, 999, 2);
+    });
+    Integer[] withNull = {1, 2, null, 4};
+    assertThrows(NullPointerException.class, () -> {
+      fixed.offerAll(withNull, 0, withNull.length);
+    });
+    assertThrows(NullPointerException.class, () -> {
+      fixed.addAll(Arrays.asList(withNull));
+    });
+    assertThrows(NullPointerException.class, () -> {
+      fixed.addAllFirst(Arrays.asList(withNull));
+    });
+    checkIndexed(fixed, expected);
+
+    // Single-element operations still line up with the bulk-filled blocks
+    fixed.offerFirst(-1);
+    fixed.offerLast(-2);
+    expected.add(0, -1);
+    expected.add(-2);
+    checkIndexed(fixed, expected);
+    assertArrayEquals(expected.toArray(), fixed.toArray());
+  }
+
+  @Test
+  void testBulkDrain() {
+    HybridDeque<Integer> deque = new HybridDeque<Integer>(8);
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 3000; i++) {
+      deque.offerLast(i);
+      expected.add(i);
+    }
+
+    Integer[] batch = new Integer[512];
+    assertEquals(512, deque.pollFirst(batch, 512));
+    assertArrayEquals(expected.subList(0, 512).toArray(), batch);
+    expected.subList(0, 512).clear();
+    checkIndexed(deque, expected);
+
+    assertEquals(100, deque.pollLast(batch, 100));
+    for (int i = 0; i < 100; i++) {
+      assertEquals(expected.get(expected.size() - 1 - i), batch[i]);
+    }
+    expected.subList(expected.size() - 100, expected.size()).clear();
+    checkIndexed(deque, expected);
+
+    // Into a general collection and into another HybridDeque
+    List<Integer> consumer = new ArrayList<Integer>();
+    assertEquals(777, deque.drainTo(consumer, 777));
+    assertEquals(expected.subList(0, 777), consumer);
+    expected.subList(0, 777).clear();
+    HybridDeque<Integer> other = new HybridDeque<Integer>(2, 64);
+    other.offerLast(-1);
+    assertEquals(5, deque.drainTo(other, 5));
+    assertEquals(Integer.valueOf(-1), other.pollFirst());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(expected.remove(0), other.get(i));
+    }
+    checkIndexed(deque, expected);
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      deque.drainTo(deque, 1);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      deque.pollFirst(batch, -1);
+    });
+    assertThrows(IndexOutOfBoundsException.class, () -> {
+      deque.pollLast(new Integer[2], 3);
+    });
+
+    // Draining everything leaves a usable empty deque
+    int remaining = expected.size();
+    assertEquals(remaining, deque.drainTo(consumer));
+    assertEquals(0, deque.size());
+    assertEquals(0, deque.pollFirst(batch, 10));
+    assertEquals(0, deque.pollLast(batch, 10));
+    checkAgainstArrayDeque(deque, 9, 3000);
+  }
+
+  /**
+   * Split a spliterator all the way down, checking sizes, and collect the elements in order.
+   */
+  private static void splitAndCollect(Spliterator<Integer> spliterator, List<Integer> out) {
+    long size = spliterator.getExactSizeIfKnown();
+    Spliterator<Integer> prefix = spliterator.trySplit();
+    if (prefix == null) {
+      int before = out.size();
+      spliterator.forEachRemaining(out::add);
+      assertEquals(size, out.size() - before);
+      return;
+    }
+    assertEquals(size, prefix.getExactSizeIfKnown() + spliterator.getExactSizeIfKnown());
+    splitAndCollect(prefix, out);
+    splitAndCollect(spliterator, out);
+  }
+
+  @Test
+  void testSpliterator() {
+    HybridDeque<Integer> empty = new HybridDeque<Integer>();
+    assertNull(empty.spliterator().trySplit());
+    assertFalse(empty.spliterator().tryAdvance(e -> fail()));
+
+    HybridDeque<Integer> fixed = new HybridDeque<Integer>(16);
+    HybridDeque<Integer> adaptive = new HybridDeque<Integer>(4, 512);
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 100000; i++) {
+      if (i % 4 == 0) {
+        fixed.offerFirst(i);
+        adaptive.offerFirst(i);
+        expected.add(0, i);
+      } else {
+        fixed.offerLast(i);
+        adaptive.offerLast(i);
+        expected.add(i);
+      }
+    }
+
+    for (HybridDeque<Integer> deque : Arrays.asList(fixed, adaptive)) {
+      Spliterator<Integer> spliterator = deque.spliterator();
+      assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+      assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+      assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+      assertTrue(spliterator.hasCharacteristics(Spliterator.NONNULL));
+      assertEquals(expected.size(), spliterator.estimateSize());
+
+      // Take a few elements one at a time, then split the rest
+      List<Integer> collected = new ArrayList<Integer>();
+      for (int i = 0; i < 3; i++) {
+        assertTrue(spliterator.tryAdvance(collected::add));
+      }
+      splitAndCollect(spliterator, collected);
+      assertEquals(expected, collected);
+
+      long sum = 0;
+      for (Integer value : expected) {
+        sum += value;
+      }
+      assertEquals(sum, deque.parallelStream().mapToLong(Integer::longValue).sum());
+      assertEquals(expected.size(), deque.stream().count());
+    }
+  }
+
+  @Test
+  void testBlockwiseSnapshotsAndComparison() {
+    HybridDeque<Integer> fixed = new HybridDeque<Integer>(8);
+    HybridDeque<Integer> other = new HybridDeque<Integer>(32);
+    HybridDeque<Integer> adaptive = new HybridDeque<Integer>(2, 256);
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 5000; i++) {
+      if (i % 5 == 0) {
+        fixed.offerFirst(i);
+        other.offerFirst(i);
+        adaptive.offerFirst(i);
+        expected.add(0, i);
+      } else {
+        fixed.offerLast(i);
+        other.offerLast(i);
+        adaptive.offerLast(i);
+        expected.add(i);
+      }
+    }
+
+    // Equal contents with different block layouts
+    assertTrue(fixed.equals(other));
+    assertTrue(other.equals(adaptive));
+    assertEquals(expected.hashCode(), fixed.hashCode());
+    assertEquals(fixed.hashCode(), adaptive.hashCode());
+    assertEquals(new HybridDeque<Integer>().hashCode(), new HybridDeque<Integer>(64).hashCode());
+
+    other.set(4321, -1);
+    assertFalse(fixed.equals(other));
+    assertFalse(other.equals(fixed));
+    other.set(4321, expected.get(4321));
+    other.pollLast();
+    assertFalse(fixed.equals(other));
+
+    assertArrayEquals(expected.toArray(), fixed.toArray());
+    assertArrayEquals(expected.toArray(), adaptive.toArray(new Integer[0]));
+    Integer[] larger = new Integer[expected.size() + 2];
+    Arrays.fill(larger, 7);
+    assertSame(larger, fixed.toArray(larger));
+    assertNull(larger[expected.size()]);
+    assertEquals(Integer.valueOf(7), larger[expected.size() + 1]);
+    assertEquals(expected, Arrays.asList(larger).subList(0, expected.size()));
+    assertThrows(ArrayStoreException.class, () -> {
+      fixed.toArray(new String[0]);
+    });
+
+    List<Integer> visited = new ArrayList<Integer>();
+    adaptive.forEach(visited::add);
+    assertEquals(expected, visited);
+    assertThrows(NullPointerException.class, () -> {
+      fixed.forEach(null);
+    });
+  }
+
+  @Test
+  void testFailFastIteration() {
+    HybridDeque<Integer> deque = new HybridDeque<Integer>(4);
+    for (int i = 0; i < 20; i++) {
+      deque.offerLast(i);
+    }
+
+    Iterator<Integer> it = deque.iterator();
+    it.next();
+    deque.offerLast(20);
+    assertThrows(ConcurrentModificationException.class, () -> {
+      it.next();
+    });
+    assertThrows(ConcurrentModificationException.class, () -> {
+      it.remove();
+    });
+
+    Iterator<Integer> descending = deque.descendingIterator();
+    descending.next();
+    deque.pollFirst();
+    assertThrows(ConcurrentModificationException.class, () -> {
+      descending.next();
+    });
+
+    // The iterator's own removals and set() do not invalidate it
+    Iterator<Integer> remover = deque.iterator();
+    remover.next();
+    remover.remove();
+    deque.set(0, 100);
+    assertEquals(Integer.valueOf(100), remover.next());
+    remover.remove();
+    int count = 0;
+    while (remover.hasNext()) {
+      remover.next();
+      count++;
+    }
+    assertEquals(deque.size(), count);
+    assertThrows(NoSuchElementException.class, () -> {
+      remover.next();
+    });
+
+    assertThrows(ConcurrentModificationException.class, () -> {
+      deque.forEach(e -> deque.offerFirst(e));
+    });
+    Spliterator<Integer> spliterator = deque.spliterator();
+    deque.pollLast();
+    assertThrows(ConcurrentModificationException.class, () -> {
+      spliterator.forEachRemaining(e -> {
+      });
+    });
+    assertThrows(ConcurrentModificationException.class, () -> {
+      for (Integer value : deque) {
+        if (value % 2 == 0) {
+          deque.remove(value);
+        }
+      }
+    });
+  }
+
+  @Test
+  void testSnapshotRoundTrip() throws IOException {
+    HybridDeque<Integer> deque = new HybridDeque<Integer>(4, 64);
+    for (int i = 0; i < 5000; i++) {
+      deque.offerLast(i);
+      deque.offerFirst(-i);
+    }
+    for (int i = 0; i < 1234; i++) {
+      deque.pollFirst();
+    }
 
+    // A stream channel takes plain writes
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    deque.writeSnapshot(Channels.newChannel(bytes), RecordCodec.ints());
+    assertEquals(20 + 4 * deque.size(), bytes.size());
+    HybridDeque<Integer> copy = HybridDeque.readSnapshot(
+        Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), RecordCodec.ints());
+    assertEquals(deque, copy);
+    checkIndexed(copy, new ArrayList<Integer>(deque));
+
+    // The loaded deque is an ordinary deque at both ends
+    copy.offerFirst(100);
+    copy.offerLast(200);
+    assertEquals(Integer.valueOf(100), copy.pollFirst());
+    assertEquals(Integer.valueOf(200), copy.pollLast());
+    assertEquals(deque, copy);
+
+    // Reloading keeps the block sizes, so writing the copy gives the same bytes, even when empty
+    HybridDeque<Integer> fixed = new HybridDeque<Integer>(8);
+    fixed.offerLast(1);
+    for (HybridDeque<Integer> original : Arrays.asList(deque, fixed, new HybridDeque<Integer>(8),
+        new HybridDeque<Integer>(2, 8))) {
+      ByteArrayOutputStream first = new ByteArrayOutputStream();
+      original.writeSnapshot(Channels.newChannel(first), RecordCodec.ints());
+      ByteArrayOutputStream second = new ByteArrayOutputStream();
+      HybridDeque.readSnapshot(Channels.newChannel(new ByteArrayInputStream(first.toByteArray())),
+          RecordCodec.ints()).writeSnapshot(Channels.newChannel(second), RecordCodec.ints());
+      assertArrayEquals(first.toByteArray(), second.toByteArray());
+    }
 
+    // A file channel takes gathering writes
+    Path file = Files.createTempFile("snapshot", ".dat");
+    try {
+      HybridDeque<Long> longs = new HybridDeque<Long>(8);
+      HybridDeque<Long> empty = new HybridDeque<Long>(8);
+      for (long i = 0; i < 100000; i++) {
+        longs.offerLast(i * i);
+      }
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        longs.writeSnapshot(channel, RecordCodec.longs());
+        empty.writeSnapshot(channel, RecordCodec.longs());
+      }
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        assertEquals(longs, HybridDeque.readSnapshot(channel, RecordCodec.longs()));
+        assertTrue(HybridDeque.readSnapshot(channel, RecordCodec.longs()).isEmpty());
+      }
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        assertThrows(IOException.class, () -> {
+          HybridDeque.readSnapshot(channel, RecordCodec.ints());
+        });
+      }
+    } finally {
+      Files.delete(file);
+    }
+
+    byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 1);
+    assertThrows(IOException.class, () -> {
+      HybridDeque.readSnapshot(Channels.newChannel(new ByteArrayInputStream(truncated)),
+          RecordCodec.ints());
+    });
+
+    // A header claiming far more records or far larger blocks than the stream holds fails with
+    // an IOException instead of allocating for the claimed size
+    byte[] huge = Arrays.copyOf(bytes.toByteArray(), 100);
+    ByteBuffer.wrap(huge).putInt(16, Integer.MAX_VALUE);
+    assertThrows(IOException.class, () -> {
+      HybridDeque.readSnapshot(Channels.newChannel(new ByteArrayInputStream(huge)),
+          RecordCodec.ints());
+    });
+    ByteBuffer.wrap(huge).putInt(8, 1 << 30).putInt(12, 1 << 30);
+    assertThrows(IOException.class, () -> {
+      HybridDeque.readSnapshot(Channels.newChannel(new ByteArrayInputStream(huge)),
+          RecordCodec.ints());
+    });
+    byte[] badBlocks = bytes.toByteArray();
+    ByteBuffer.wrap(badBlocks).putInt(8, 0);
+    assertThrows(IOException.class, () -> {
+      HybridDeque.readSnapshot(Channels.newChannel(new ByteArrayInputStream(badBlocks)),
+          RecordCodec.ints());
+    });
+  }
+
+  @Test
+  void testCopyOnWriteSnapshots() {
+    for (HybridDeque<Integer> deque : Arrays.asList(new HybridDeque<Integer>(4),
+        new HybridDeque<Integer>(4, 64))) {
+      ArrayDeque<Integer> model = new ArrayDeque<Integer>();
+      List<Deque<Integer>> snapshots = new ArrayList<Deque<Integer>>();
+      List<List<Integer>> expected = new ArrayList<List<Integer>>();
+      Random random = new Random(22);
+      for (int step = 0; step < 4000; step++) {
+        int value = random.nextInt(50);
+        switch (random.nextInt(11)) {
+          case 0:
+          case 1:
+            deque.offerFirst(value);
+            model.offerFirst(value);
+            break;
+          case 2:
+          case 3:
+            deque.offerLast(value);
+            model.offerLast(value);
+            break;
+          case 4:
+            assertEquals(model.pollFirst(), deque.pollFirst());
+            break;
+          case 5:
+            assertEquals(model.pollLast(), deque.pollLast());
+            break;
+          case 6:
+            assertEquals(model.removeFirstOccurrence(value), deque.removeFirstOccurrence(value));
+            break;
+          case 7:
+            if (!model.isEmpty()) {
+              int index = random.nextInt(model.size());
+              List<Integer> list = new ArrayList<Integer>(model);
+              list.set(index, value);
+              model = new ArrayDeque<Integer>(list);
+              deque.set(index, value);
+            }
+            break;
+          case 8:
+            Integer[] batch = new Integer[5];
+            int count = deque.pollFirst(batch, 5);
+            for (int i = 0; i < count; i++) {
+              assertEquals(model.pollFirst(), batch[i]);
+            }
+            break;
+          case 9:
+            if (random.nextInt(20) == 0) {
+              deque.clear();
+              model.clear();
+            } else {
+              Iterator<Integer> iterator = deque.descendingIterator();
+              Iterator<Integer> modelIterator = model.descendingIterator();
+              while (iterator.hasNext()) {
+                Integer next = iterator.next();
+                assertEquals(modelIterator.next(), next);
+                if (next % 7 == 0) {
+                  iterator.remove();
+                  modelIterator.remove();
+                }
+              }
+            }
+            break;
+          default:
+            snapshots.add(deque.snapshot());
+            expected.add(new ArrayList<Integer>(model));
+            break;
+        }
+        assertEquals(model.size(), deque.size());
+      }
+      assertEquals(new ArrayList<Integer>(model), new ArrayList<Integer>(deque));
+      deque.removeIf(e -> e % 3 == 0);
+      model.removeIf(e -> e % 3 == 0);
+      assertEquals(new ArrayList<Integer>(model), new ArrayList<Integer>(deque));
+
+      for (int i = 0; i < snapshots.size(); i++) {
+        Deque<Integer> snapshot = snapshots.get(i);
+        List<Integer> list = expected.get(i);
+        assertEquals(list, new ArrayList<Integer>(snapshot));
+        List<Integer> reversed = new ArrayList<Integer>();
+        snapshot.descendingIterator().forEachRemaining(reversed::add);
+        Collections.reverse(reversed);
+        assertEquals(list, reversed);
+        assertEquals(list.size(), snapshot.size());
+        assertEquals(list.isEmpty() ? null : list.get(0), snapshot.peekFirst());
+      }
+    }
+
+    // Snapshots are immutable and do not copy anything
+    HybridDeque<Integer> big = new HybridDeque<Integer>(8);
+    for (int i = 0; i < 1000000; i++) {
+      big.offerLast(i);
+    }
+    Deque<Integer> snapshot = big.snapshot();
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.offerLast(1));
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.pollFirst());
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.clear());
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.removeIf(e -> true));
+    big.set(500000, -1);
+    big.pollFirst();
+    big.offerLast(-2);
+    assertEquals(Integer.valueOf(500000), snapshot.stream().skip(500000).findFirst().get());
+    assertEquals(Integer.valueOf(0), snapshot.peekFirst());
+    assertEquals(Integer.valueOf(999999), snapshot.peekLast());
+    assertEquals(Integer.valueOf(-1), big.get(499999));
+    assertEquals(Integer.valueOf(-2), big.peekLast());
+  }
+
+  @Test
+  void testBoundedWindow() {
+    HybridDeque<Integer> deque = new HybridDeque<Integer>(4);
+    assertEquals(Integer.MAX_VALUE, deque.capacity());
+    assertThrows(IllegalArgumentException.class, () -> {
+      deque.setCapacity(0, HybridDeque.OverflowPolicy.REJECT);
+    });
+    assertThrows(NullPointerException.class, () -> {
+      deque.setCapacity(5, null);
+    });
+
+    // REJECT refuses offers and makes adds throw
+    deque.setCapacity(5, HybridDeque.OverflowPolicy.REJECT);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(deque.offerLast(i));
+    }
+    assertEquals(0, deque.remainingCapacity());
+    assertFalse(deque.offerLast(5));
+    assertFalse(deque.offerFirst(5));
+    assertThrows(IllegalStateException.class, () -> {
+      deque.add(5);
+    });
+    assertThrows(IllegalStateException.class, () -> {
+      deque.push(5);
+    });
+    assertThrows(IllegalStateException.class, () -> {
+      deque.addAll(Arrays.asList(5, 6));
+    });
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4), new ArrayList<Integer>(deque));
+    assertThrows(IllegalArgumentException.class, () -> {
+      deque.setCapacity(3, HybridDeque.OverflowPolicy.REJECT);
+    });
+
+    // EVICT_OLDEST drops from the opposite end and reports each eviction
+    List<Integer> evicted = new ArrayList<Integer>();
+    deque.setEvictionListener(evicted::add);
+    deque.setCapacity(5, HybridDeque.OverflowPolicy.EVICT_OLDEST);
+    deque.offerLast(5);
+    deque.offerFirst(-1);
+    assertEquals(Arrays.asList(0, 5), evicted);
+    assertEquals(Arrays.asList(-1, 1, 2, 3, 4), new ArrayList<Integer>(deque));
+    deque.addAll(Arrays.asList(10, 11, 12, 13, 14, 15, 16));
+    assertEquals(Arrays.asList(12, 13, 14, 15, 16), new ArrayList<Integer>(deque));
+    Integer[] batch = {20, 21};
+    assertTrue(deque.offerAll(batch, 0, 2));
+    assertEquals(Arrays.asList(14, 15, 16, 20, 21), new ArrayList<Integer>(deque));
+
+    // EVICT_NEWEST replaces the element at the same end
+    evicted.clear();
+    deque.setCapacity(5, HybridDeque.OverflowPolicy.EVICT_NEWEST);
+    deque.offerLast(22);
+    deque.addAllFirst(Arrays.asList(7, 8));
+    // 8 is added first and is then the newest element at the front when 7 arrives
+    assertEquals(Arrays.asList(21, 14, 8), evicted);
+    assertEquals(Arrays.asList(7, 15, 16, 20, 22), new ArrayList<Integer>(deque));
+
+    // Shrinking evicts from the front for EVICT_OLDEST
+    evicted.clear();
+    deque.setCapacity(3, HybridDeque.OverflowPolicy.EVICT_OLDEST);
+    assertEquals(Arrays.asList(7, 15), evicted);
+    assertEquals(Arrays.asList(16, 20, 22), new ArrayList<Integer>(deque));
+    deque.setCapacity(Integer.MAX_VALUE, HybridDeque.OverflowPolicy.REJECT);
+    assertTrue(deque.offerLast(23));
+    assertEquals(4, deque.size());
+
+    // Draining into a bounded deque goes through its overflow policy
+    HybridDeque<Integer> source = new HybridDeque<Integer>(4);
+    for (int i = 0; i < 20; i++) {
+      source.offerLast(i);
+    }
+    HybridDeque<Integer> window = new HybridDeque<Integer>(4);
+    window.setCapacity(5, HybridDeque.OverflowPolicy.EVICT_OLDEST);
+    evicted.clear();
+    window.setEvictionListener(evicted::add);
+    assertEquals(20, source.drainTo(window));
+    assertEquals(Arrays.asList(15, 16, 17, 18, 19), new ArrayList<Integer>(window));
+    assertEquals(15, evicted.size());
+
+    HybridDeque<Integer> full = new HybridDeque<Integer>(4);
+    full.setCapacity(5, HybridDeque.OverflowPolicy.REJECT);
+    window.drainTo(full, 3);
+    assertEquals(Arrays.asList(15, 16, 17), new ArrayList<Integer>(full));
+    window.offerLast(20);
+    assertThrows(IllegalStateException.class, () -> {
+      window.drainTo(full);
+    });
+    assertEquals(5, full.size());
+  }
+
+  @Test
+  void testBoundedWindowAllocationFree() {
+    HybridDeque<Integer> deque = new HybridDeque<Integer>();
+    deque.setCapacity(100, HybridDeque.OverflowPolicy.EVICT_OLDEST);
+    Integer[] values = new Integer[100];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i;
+    }
+    int[] evictions = new int[1];
+    deque.setEvictionListener(e -> evictions[0]++);
+
+    // A full sliding window: every offer evicts the oldest element
+    for (int r = 0; r < 2000; r++) {
+      for (int i = 0; i < values.length; i++) {
+        deque.offerLast(values[i]);
+      }
+    }
+    assertEquals(100, deque.size());
+    assertEquals(2000 * values.length - 100, evictions[0]);
+
+    long before = allocatedBytes();
+    for (int r = 0; r < 2000; r++) {
+      for (int i = 0; i < values.length; i++) {
+        deque.offerLast(values[i]);
+      }
+    }
+    long allocated = allocatedBytes() - before;
+    assertTrue(allocated < 4096, "allocated " + allocated + " bytes");
+    assertEquals(Arrays.asList(values), new ArrayList<Integer>(deque));
+  }
+
+}
@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * IntHybridDeque Test Class - Behavior checked against ArrayDeque, plus iterators and streams.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+class IntHybridDequeTest {
+
+  @Test
+  void testEmptyDeque() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new IntHybridDeque(1);
+    });
+
+    IntHybridDeque deque = new IntHybridDeque();
+    assertTrue(deque.isEmpty());
+    assertThrows(NoSuchElementException.class, () -> {
+      deque.pollFirst();
+    });
+    assertThrows(NoSuchElementException.class, () -> {
+      deque.pollLast();
+    });
+    assertThrows(NoSuchElementException.class, () -> {
+      deque.peekFirst();
+    });
+    assertThrows(NoSuchElementException.class, () -> {
+      deque.peekLast();
+    });
+    assertFalse(deque.iterator().hasNext());
+    assertEquals(0, deque.stream().count());
+  }
+
+  @Test
+  void testMatchesArrayDeque() {
+    IntHybridDeque deque = new IntHybridDeque(4);
+    ArrayDeque<Integer> expected = new ArrayDeque<Integer>();
+    Random rand = new Random(240);
+    for (int step = 0; step < 20000; step++) {
+      int op = rand.nextInt(5);
+      int value = rand.nextInt();
+      if (op == 0) {
+        deque.offerFirst(value);
+        expected.offerFirst(value);
+      } else if (op == 1) {
+        deque.offerLast(value);
+        expected.offerLast(value);
+      } else if (expected.isEmpty()) {
+        assertTrue(deque.isEmpty());
+      } else if (op == 2) {
+        assertEquals((int) expected.pollFirst(), deque.pollFirst());
+      } else if (op == 3) {
+        assertEquals((int) expected.pollLast(), deque.pollLast());
+      } else {
+        assertEquals((int) expected.peekFirst(), deque.peekFirst());
+        assertEquals((int) expected.peekLast(), deque.peekLast());
+      }
+      assertEquals(expected.size(), deque.size());
+    }
+
+    int[] values = expected.stream().mapToInt(Integer::intValue).toArray();
+    assertArrayEquals(values, deque.toArray());
+    assertArrayEquals(values, deque.stream().toArray());
+    assertEquals(expected.stream().mapToLong(Integer::longValue).sum(),
+        deque.stream().asLongStream().sum());
+
+    PrimitiveIterator.OfInt backwards = deque.descendingIterator();
+    for (int i = values.length - 1; i >= 0; i--) {
+      assertEquals(values[i], backwards.nextInt());
+    }
+    assertFalse(backwards.hasNext());
+
+    deque.clear();
+    assertTrue(deque.isEmpty());
+    deque.offerLast(7);
+    assertEquals(7, deque.peekFirst());
+  }
+
+  @Test
+  void testIteratorsAndForEach() {
+    IntHybridDeque deque = new IntHybridDeque(4);
+    for (int i = 0; i < 10; i++) {
+      deque.offerLast(i);
+    }
+    int[] sum = new int[1];
+    deque.forEach(v -> sum[0] += v);
+    assertEquals(45, sum[0]);
+
+    PrimitiveIterator.OfInt it = deque.iterator();
+    for (int i = 0; i < 10; i++) {
+      assertEquals(i, it.nextInt());
+    }
+    assertThrows(NoSuchElementException.class, () -> {
+      it.nextInt();
+    });
+
+    PrimitiveIterator.OfInt stale = deque.iterator();
+    deque.offerFirst(-1);
+    assertThrows(ConcurrentModificationException.class, () -> {
+      stale.nextInt();
+    });
+    assertThrows(ConcurrentModificationException.class, () -> {
+      deque.forEach(v -> deque.offerLast(v));
+    });
+  }
+}
@@ -0,0 +1,372 @@
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Version of HybridDeque that stores long values directly in long[] blocks, so elements are never
+ * boxed. Since there is no null to signal an empty deque, pollFirst, pollLast, peekFirst and
+ * peekLast throw a NoSuchElementException when the deque is empty; check isEmpty first.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public class LongHybridDeque {
+
+  private static final int DEFAULT_BLOCK_SIZE = 64;
+
+  private final int blockSize;
+
+  private Block leftBlock;
+  private int leftIndex;
+  private Block rightBlock;
+  private int rightIndex;
+  private int size;
+  private int modCount;
+
+  // One drained block kept so that an end moving back and forth over a block boundary does not
+  // allocate
+  private Block spareBlock;
+
+  /**
+   * Doubly linked list node (or block) containing an array with space for multiple values.
+   */
+  private static final class Block {
+    private final long[] elements;
+    private Block next;
+    private Block prev;
+
+    /**
+     * Block Constructor.
+     *
+     * @param prev Reference to previous block, or null if this is the first
+     * @param next Reference to next block, or null if this is the last
+     * @param length Number of values the block can hold
+     */
+    Block(Block prev, Block next, int length) {
+      this.elements = new long[length];
+      this.next = next;
+      this.prev = prev;
+    }
+  }
+
+  /**
+   * Default Constructor.
+   */
+  public LongHybridDeque() {
+    this(DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Create a deque whose blocks hold the given number of values.
+   *
+   * @param blockSize Values per block, at least 2
+   * @throws IllegalArgumentException if blockSize is less than 2
+   */
+  public LongHybridDeque(int blockSize) {
+    if (blockSize < 2) {
+      throw new IllegalArgumentException("Illegal block size: " + blockSize);
+    }
+    this.blockSize = blockSize;
+    leftBlock = new Block(null, null, blockSize);
+    recenter();
+  }
+
+  /**
+   * Add a value to the front of the deque.
+   *
+   * @param value The value to add
+   */
+  public void offerFirst(long value) {
+    if (leftIndex == 0) {
+      Block block = newBlock(null, leftBlock);
+      leftBlock.prev = block;
+      leftBlock = block;
+      leftIndex = blockSize;
+    }
+    leftIndex--;
+    leftBlock.elements[leftIndex] = value;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Add a value to the end of the deque.
+   *
+   * @param value The value to add
+   */
+  public void offerLast(long value) {
+    if (rightIndex == blockSize - 1) {
+      Block block = newBlock(rightBlock, null);
+      rightBlock.next = block;
+      rightBlock = block;
+      rightIndex = -1;
+    }
+    rightIndex++;
+    rightBlock.elements[rightIndex] = value;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Remove the value at the front of the deque.
+   *
+   * @return The removed value
+   * @throws NoSuchElementException if the deque is empty
+   */
+  public long pollFirst() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+
+    long temp = leftBlock.elements[leftIndex];
+    size--;
+    modCount++;
+    if (size == 0) {
+      recenter();
+    } else if (leftIndex == blockSize - 1) {
+      Block drained = leftBlock;
+      leftBlock = drained.next;
+      leftBlock.prev = null;
+      freeBlock(drained);
+      leftIndex = 0;
+    } else {
+      leftIndex++;
+    }
+    return temp;
+  }
+
+  /**
+   * Remove the value at the end of the deque.
+   *
+   * @return The removed value
+   * @throws NoSuchElementException if the deque is empty
+   */
+  public long pollLast() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+
+    long temp = rightBlock.elements[rightIndex];
+    size--;
+    modCount++;
+    if (size == 0) {
+      recenter();
+    } else if (rightIndex == 0) {
+      Block drained = rightBlock;
+      rightBlock = drained.prev;
+      rightBlock.next = null;
+      freeBlock(drained);
+      rightIndex = blockSize - 1;
+    } else {
+      rightIndex--;
+    }
+    return temp;
+  }
+
+  /**
+   * Return the value at the front of the deque without removing it.
+   *
+   * @throws NoSuchElementException if the deque is empty
+   */
+  public long peekFirst() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return leftBlock.elements[leftIndex];
+  }
+
+  /**
+   * Return the value at the end of the deque without removing it.
+   *
+   * @throws NoSuchElementException if the deque is empty
+   */
+  public long peekLast() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return rightBlock.elements[rightIndex];
+  }
+
+  /**
+   * Take the spare block, or allocate one if there is none.
+   */
+  private Block newBlock(Block prev, Block next) {
+    Block block = spareBlock;
+    if (block == null) {
+      return new Block(prev, next, blockSize);
+    }
+    spareBlock = null;
+    block.prev = prev;
+    block.next = next;
+    return block;
+  }
+
+  /**
+   * Unlink a drained block and keep it as the spare.
+   */
+  private void freeBlock(Block block) {
+    block.prev = null;
+    block.next = null;
+    spareBlock = block;
+  }
+
+  /**
+   * Put an empty deque back in the middle of its left block so that both ends have room to grow.
+   */
+  private void recenter() {
+    int center = (blockSize - 1) / 2;
+    leftBlock.next = null;
+    rightBlock = leftBlock;
+    leftIndex = center + 1;
+    rightIndex = center;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Remove all values. Only the left block is kept.
+   */
+  public void clear() {
+    size = 0;
+    modCount++;
+    recenter();
+  }
+
+  /**
+   * Copy the values, front to back, into a new array.
+   */
+  public long[] toArray() {
+    long[] result = new long[size];
+    Block block = leftBlock;
+    int index = leftIndex;
+    int copied = 0;
+    while (copied < size) {
+      int length = Math.min(blockSize - index, size - copied);
+      System.arraycopy(block.elements, index, result, copied, length);
+      copied += length;
+      block = block.next;
+      index = 0;
+    }
+    return result;
+  }
+
+  /**
+   * Perform the given action for each value, front to back, one block at a time.
+   *
+   * @throws ConcurrentModificationException if the action modifies the deque
+   */
+  public void forEach(LongConsumer action) {
+    int expectedModCount = modCount;
+    Block block = leftBlock;
+    int index = leftIndex;
+    int remaining = size;
+    while (remaining > 0) {
+      int end = Math.min(blockSize, index + remaining);
+      long[] elements = block.elements;
+      for (int i = index; i < end; i++) {
+        action.accept(elements[i]);
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      remaining -= end - index;
+      block = block.next;
+      index = 0;
+    }
+  }
+
+  /**
+   * Returns a sequential stream of the values, front to back.
+   */
+  public LongStream stream() {
+    Spliterator.OfLong spliterator =
+        Spliterators.spliterator(iterator(), size, Spliterator.ORDERED);
+    return StreamSupport.longStream(spliterator, false);
+  }
+
+  /**
+   * Returns a fail-fast iterator over the values, front to back.
+   */
+  public PrimitiveIterator.OfLong iterator() {
+    return new CustomIterator();
+  }
+
+  /**
+   * Returns a fail-fast iterator over the values, back to front.
+   */
+  public PrimitiveIterator.OfLong descendingIterator() {
+    return new CustomIteratorDescending();
+  }
+
+  private class CustomIterator implements PrimitiveIterator.OfLong {
+    private Block block = leftBlock;
+    private int index = leftIndex;
+    private int nextPosition = 0;
+    private final int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return nextPosition < size;
+    }
+
+    @Override
+    public long nextLong() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (nextPosition >= size) {
+        throw new NoSuchElementException();
+      }
+      long temp = block.elements[index];
+      index++;
+      if (index == blockSize) {
+        block = block.next;
+        index = 0;
+      }
+      nextPosition++;
+      return temp;
+    }
+  }
+
+  private class CustomIteratorDescending implements PrimitiveIterator.OfLong {
+    private Block block = rightBlock;
+    private int index = rightIndex;
+    private int nextPosition = size - 1;
+    private final int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return nextPosition >= 0;
+    }
+
+    @Override
+    public long nextLong() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (nextPosition < 0) {
+        throw new NoSuchElementException();
+      }
+      long temp = block.elements[index];
+      index--;
+      if (index < 0) {
+        block = block.prev;
+        index = blockSize - 1;
+      }
+      nextPosition--;
+      return temp;
+    }
+  }
+}
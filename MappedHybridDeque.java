@@ -0,0 +1,602 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Persistent version of HybridDeque whose blocks are pages of a memory-mapped file. A header page
+ * records the left and right block and index and the size, so offers and polls are only writes to
+ * mapped memory, and reopening the file after a restart picks up exactly where the deque left off
+ * without any replay. Elements are stored as fixed-width records written by a RecordCodec.
+ *
+ * <p>Writes reach the file when the operating system flushes the mapped pages, which survives a
+ * crash of the process but not of the machine. Call force to flush explicitly, or use
+ * setSyncInterval for group commit: a force after every given number of modifications. This
+ * implementation does not allow null's to be added to the collection. Adding a null will result in
+ * a NullPointerException.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public class MappedHybridDeque<E> extends AbstractDeque<E> implements AutoCloseable {
+
+  /*
+   * IMPLEMENTATION NOTES ----------------------------------
+   *
+   * Blocks have logical numbers that may be negative: offerFirst links leftBlock - 1 and offerLast
+   * links rightBlock + 1. Block number k lives in file page floorMod(k, capacity), so the pages
+   * are used as a ring. When every page is live the ring doubles. For each live block, its page
+   * either stays where it is or moves to the new upper half of the file, which holds nothing live.
+   * The copied pages are forced before the header records the new capacity, so a crash during
+   * growth leaves the old layout intact. The file always holds every page of the ring: a new file
+   * is extended to its first ring, and growth extends it before the header records the new
+   * capacity. A capacity the file cannot hold is therefore a corrupt header.
+   *
+   * Only writes mark a page dirty (writePage); reads go through readPage, so force flushes just
+   * the pages that were changed.
+   *
+   * Record bytes are always written before the header fields that make them part of the deque.
+   *
+   * The ends and size are kept in two header slots. writeEnds fills the slot that is not current
+   * and then stores a single commit word whose low bit names the new current slot, so a process
+   * that dies partway through writeEnds leaves the previous slot, and a consistent deque, in
+   * place. Files written before the commit word existed read as commit 0, which is slot 0 at the
+   * original offsets. The header is checked when a file is opened, and a file whose fields cannot
+   * describe a deque is rejected with an IOException.
+   */
+
+  private static final int MAGIC = 0x48594251;
+  private static final int HEADER_BYTES = 4096;
+  private static final int DEFAULT_BLOCK_SIZE = 1024;
+  private static final int INITIAL_CAPACITY = 4;
+
+  private static final int WIDTH_OFFSET = 4;
+  private static final int BLOCK_SIZE_OFFSET = 8;
+  private static final int CAPACITY_OFFSET = 12;
+  private static final int COMMIT_OFFSET = 80;
+
+  // Offsets within a slot; slot 0 starts at 16 and slot 1 at 48
+  private static final int SLOT_OFFSET = 16;
+  private static final int SLOT_BYTES = 32;
+  private static final int LEFT_BLOCK_OFFSET = 0;
+  private static final int LEFT_INDEX_OFFSET = 8;
+  private static final int RIGHT_INDEX_OFFSET = 12;
+  private static final int RIGHT_BLOCK_OFFSET = 16;
+  private static final int SIZE_OFFSET = 24;
+
+  private final RecordCodec<E> codec;
+  private final int width;
+  private final int blockSize;
+  private final int pageBytes;
+
+  private FileChannel channel;
+  private MappedByteBuffer header;
+  private MappedByteBuffer[] pages;
+  private final BitSet dirtyPages = new BitSet();
+  private int capacity;
+
+  private long leftBlock;
+  private int leftIndex;
+  private long rightBlock;
+  private int rightIndex;
+  private int size;
+  private int modCount;
+  private int commit;
+
+  private int syncInterval;
+  private int unsynced;
+
+  /**
+   * Open a deque file with the default block size, creating it if it does not exist.
+   *
+   * @param file The file to open
+   * @param codec Codec for the elements
+   * @throws IOException if the file cannot be opened or is not a deque file for this codec
+   */
+  public MappedHybridDeque(Path file, RecordCodec<E> codec) throws IOException {
+    this(file, codec, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Open a deque file, creating it if it does not exist. An existing file keeps the block size it
+   * was created with.
+   *
+   * @param file The file to open
+   * @param codec Codec for the elements
+   * @param blockSize Records per page for a new file, at least 2
+   * @throws IOException if the file cannot be opened or is not a deque file for this codec
+   * @throws IllegalArgumentException if blockSize is less than 2
+   */
+  public MappedHybridDeque(Path file, RecordCodec<E> codec, int blockSize) throws IOException {
+    this.codec = Objects.requireNonNull(codec);
+    this.width = codec.width();
+    if (blockSize < 2 || (long) blockSize * width > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Illegal block size: " + blockSize);
+    }
+
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      boolean existing = channel.size() > 0;
+      header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+      if (existing) {
+        if (header.getInt(0) != MAGIC || header.getInt(WIDTH_OFFSET) != width) {
+          throw new IOException(file + " is not a deque file for records of " + width + " bytes");
+        }
+        this.blockSize = header.getInt(BLOCK_SIZE_OFFSET);
+        capacity = header.getInt(CAPACITY_OFFSET);
+        commit = header.getInt(COMMIT_OFFSET);
+        int slot = slot(commit);
+        leftBlock = header.getLong(slot + LEFT_BLOCK_OFFSET);
+        leftIndex = header.getInt(slot + LEFT_INDEX_OFFSET);
+        rightBlock = header.getLong(slot + RIGHT_BLOCK_OFFSET);
+        rightIndex = header.getInt(slot + RIGHT_INDEX_OFFSET);
+        long storedSize = header.getLong(slot + SIZE_OFFSET);
+        if (!validHeader(storedSize)) {
+          throw new IOException(file + " has a corrupt header");
+        }
+        size = (int) storedSize;
+        this.pageBytes = this.blockSize * width;
+      } else {
+        this.blockSize = blockSize;
+        this.pageBytes = blockSize * width;
+        capacity = INITIAL_CAPACITY;
+        reserve(capacity);
+        header.putInt(WIDTH_OFFSET, width);
+        header.putInt(BLOCK_SIZE_OFFSET, blockSize);
+        header.putInt(CAPACITY_OFFSET, capacity);
+        recenter();
+        writeEnds();
+        header.putInt(0, MAGIC);
+        header.force();
+      }
+      pages = new MappedByteBuffer[capacity];
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Force a flush after every given number of modifications (group commit). Zero, the default,
+   * leaves flushing to the operating system and explicit calls to force.
+   *
+   * @param operations Modifications per flush, or 0
+   * @throws IllegalArgumentException if operations is negative
+   */
+  public void setSyncInterval(int operations) {
+    if (operations < 0) {
+      throw new IllegalArgumentException("Illegal sync interval: " + operations);
+    }
+    this.syncInterval = operations;
+  }
+
+  @Override
+  public boolean offerFirst(E e) {
+    ensureOpen();
+    if (e == null) {
+      throw new NullPointerException();
+    }
+
+    if (leftIndex == 0) {
+      ensureRoom();
+      leftBlock--;
+      leftIndex = blockSize;
+    }
+    codec.write(writePage(leftBlock), (leftIndex - 1) * width, e);
+    leftIndex--;
+    size++;
+    modified();
+    return true;
+  }
+
+  @Override
+  public boolean offerLast(E e) {
+    ensureOpen();
+    if (e == null) {
+      throw new NullPointerException();
+    }
+
+    if (rightIndex == blockSize - 1) {
+      ensureRoom();
+      rightBlock++;
+      rightIndex = -1;
+    }
+    codec.write(writePage(rightBlock), (rightIndex + 1) * width, e);
+    rightIndex++;
+    size++;
+    modified();
+    return true;
+  }
+
+  @Override
+  public E pollFirst() {
+    ensureOpen();
+    if (size == 0) {
+      return null;
+    }
+
+    E temp = codec.read(readPage(leftBlock), leftIndex * width);
+    size--;
+    if (size == 0) {
+      recenter();
+    } else if (leftIndex == blockSize - 1) {
+      leftBlock++;
+      leftIndex = 0;
+    } else {
+      leftIndex++;
+    }
+    modified();
+    return temp;
+  }
+
+  @Override
+  public E pollLast() {
+    ensureOpen();
+    if (size == 0) {
+      return null;
+    }
+
+    E temp = codec.read(readPage(rightBlock), rightIndex * width);
+    removeLastRecord();
+    return temp;
+  }
+
+  /**
+   * Drop the last record without decoding it.
+   */
+  private void removeLastRecord() {
+    size--;
+    if (size == 0) {
+      recenter();
+    } else if (rightIndex == 0) {
+      rightBlock--;
+      rightIndex = blockSize - 1;
+    } else {
+      rightIndex--;
+    }
+    modified();
+  }
+
+  @Override
+  public E peekFirst() {
+    ensureOpen();
+    if (size == 0) {
+      return null;
+    }
+    return codec.read(readPage(leftBlock), leftIndex * width);
+  }
+
+  @Override
+  public E peekLast() {
+    ensureOpen();
+    if (size == 0) {
+      return null;
+    }
+    return codec.read(readPage(rightBlock), rightIndex * width);
+  }
+
+  /**
+   * Returns the element at the given position, decoded from its record.
+   *
+   * @param index A position between 0 and size - 1
+   * @throws IndexOutOfBoundsException if index is out of range
+   */
+  public E get(int index) {
+    ensureOpen();
+    Objects.checkIndex(index, size);
+    long position = (long) leftIndex + index;
+    return codec.read(readPage(leftBlock + position / blockSize),
+        (int) (position % blockSize) * width);
+  }
+
+  @Override
+  public boolean removeFirstOccurrence(Object o) {
+    ensureOpen();
+    if (o == null) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (o.equals(get(i))) {
+        delete(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean removeLastOccurrence(Object o) {
+    ensureOpen();
+    if (o == null) {
+      return false;
+    }
+    for (int i = size - 1; i >= 0; i--) {
+      if (o.equals(get(i))) {
+        delete(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return removeFirstOccurrence(o);
+  }
+
+  /**
+   * Remove the record at a position by copying the records after it back one record.
+   */
+  private void delete(int index) {
+    long position = (long) leftIndex + index;
+    long end = (long) leftIndex + size - 1;
+    for (; position < end; position++) {
+      ByteBuffer to = writePage(leftBlock + position / blockSize);
+      ByteBuffer from = readPage(leftBlock + (position + 1) / blockSize);
+      int toOffset = (int) (position % blockSize) * width;
+      int fromOffset = (int) ((position + 1) % blockSize) * width;
+      to.put(toOffset, from, fromOffset, width);
+    }
+    removeLastRecord();
+  }
+
+  /**
+   * Put an empty deque back in the middle of its left block so that both ends have room to grow.
+   */
+  private void recenter() {
+    rightBlock = leftBlock;
+    int center = (blockSize - 1) / 2;
+    leftIndex = center + 1;
+    rightIndex = center;
+  }
+
+  /**
+   * Make sure there is a free page for one more block, doubling the ring if every page is live.
+   */
+  private void ensureRoom() {
+    if (rightBlock - leftBlock + 1 < capacity) {
+      return;
+    }
+    int newCapacity = capacity * 2;
+    MappedByteBuffer[] newPages = new MappedByteBuffer[newCapacity];
+    System.arraycopy(pages, 0, newPages, 0, capacity);
+    pages = newPages;
+    for (long k = leftBlock; k <= rightBlock; k++) {
+      int from = Math.floorMod(k, capacity);
+      int to = (int) Math.floorMod(k, (long) newCapacity);
+      if (from != to) {
+        mapPage(to).put(0, mapPage(from), 0, pageBytes);
+        pages[to].force();
+      }
+    }
+    try {
+      reserve(newCapacity);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    capacity = newCapacity;
+    header.putInt(CAPACITY_OFFSET, capacity);
+    header.force();
+  }
+
+  /**
+   * Extend the file so that it holds every page of a ring of the given capacity.
+   */
+  private void reserve(int capacity) throws IOException {
+    long length = HEADER_BYTES + (long) capacity * pageBytes;
+    if (channel.size() < length) {
+      channel.write(ByteBuffer.allocate(1), length - 1);
+    }
+  }
+
+  /**
+   * Returns the mapped page holding a logical block number, for reading only.
+   */
+  private MappedByteBuffer readPage(long block) {
+    return mapPage(Math.floorMod(block, capacity));
+  }
+
+  /**
+   * Returns the mapped page holding a logical block number and marks it for the next force.
+   */
+  private MappedByteBuffer writePage(long block) {
+    int index = Math.floorMod(block, capacity);
+    dirtyPages.set(index);
+    return mapPage(index);
+  }
+
+  /**
+   * Returns the mapped buffer for a file page, mapping it on first use.
+   */
+  private MappedByteBuffer mapPage(int index) {
+    MappedByteBuffer buffer = pages[index];
+    if (buffer == null) {
+      try {
+        long offset = HEADER_BYTES + (long) index * pageBytes;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, offset, pageBytes);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      pages[index] = buffer;
+    }
+    return buffer;
+  }
+
+  /**
+   * Record the new ends and size in the header and run the group commit if one is due.
+   */
+  private void modified() {
+    modCount++;
+    writeEnds();
+    unsynced++;
+    if (syncInterval > 0 && unsynced >= syncInterval) {
+      force();
+    }
+  }
+
+  /**
+   * Copy the ends and size into the slot that is not current, then make it current with one write
+   * of the commit word.
+   */
+  private void writeEnds() {
+    int next = commit + 1;
+    int slot = slot(next);
+    header.putLong(slot + LEFT_BLOCK_OFFSET, leftBlock);
+    header.putInt(slot + LEFT_INDEX_OFFSET, leftIndex);
+    header.putLong(slot + RIGHT_BLOCK_OFFSET, rightBlock);
+    header.putInt(slot + RIGHT_INDEX_OFFSET, rightIndex);
+    header.putLong(slot + SIZE_OFFSET, size);
+    // The slot must be complete before the commit word points at it
+    VarHandle.releaseFence();
+    header.putInt(COMMIT_OFFSET, next);
+    commit = next;
+  }
+
+  /**
+   * Returns the header offset of the slot a commit word selects.
+   */
+  private static int slot(int commit) {
+    return SLOT_OFFSET + (commit & 1) * SLOT_BYTES;
+  }
+
+  /**
+   * Check the fields read from an existing file's header: the block size and capacity must be
+   * ones this class could have written, the file must hold every page of the ring, and the ends
+   * must be within their blocks and agree with the size.
+   */
+  private boolean validHeader(long storedSize) throws IOException {
+    if (blockSize < 2 || (long) blockSize * width > Integer.MAX_VALUE) {
+      return false;
+    }
+    if (capacity < INITIAL_CAPACITY || Integer.bitCount(capacity) != 1) {
+      return false;
+    }
+    long pagesInFile = (channel.size() - HEADER_BYTES) / ((long) blockSize * width);
+    if (capacity > pagesInFile) {
+      return false;
+    }
+    if (leftIndex < 0 || leftIndex >= blockSize || rightIndex < 0 || rightIndex >= blockSize) {
+      return false;
+    }
+    long blocks = rightBlock - leftBlock + 1;
+    if (blocks < 1 || blocks > capacity) {
+      return false;
+    }
+    long expectedSize = (blocks - 1) * blockSize + rightIndex - leftIndex + 1;
+    return storedSize == expectedSize && storedSize <= Integer.MAX_VALUE;
+  }
+
+  /**
+   * Flush every modified page and then the header to the file.
+   */
+  public void force() {
+    ensureOpen();
+    for (int i = dirtyPages.nextSetBit(0); i >= 0; i = dirtyPages.nextSetBit(i + 1)) {
+      pages[i].force();
+    }
+    dirtyPages.clear();
+    header.force();
+    unsynced = 0;
+  }
+
+  private void ensureOpen() {
+    if (channel == null) {
+      throw new IllegalStateException("Deque is closed");
+    }
+  }
+
+  /**
+   * Flush the deque and close the file. Closing a closed deque has no effect.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    if (channel == null) {
+      return;
+    }
+    force();
+    channel.close();
+    channel = null;
+    header = null;
+    pages = null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    ensureOpen();
+    size = 0;
+    recenter();
+    modified();
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    ensureOpen();
+    return new CustomIterator(false);
+  }
+
+  @Override
+  public Iterator<E> descendingIterator() {
+    ensureOpen();
+    return new CustomIterator(true);
+  }
+
+  private class CustomIterator implements Iterator<E> {
+    private final boolean descending;
+    private int remaining = size;
+    private int lastIndex = -1;
+    private int expectedModCount = modCount;
+
+    CustomIterator(boolean descending) {
+      this.descending = descending;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    public E next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (remaining == 0) {
+        throw new NoSuchElementException();
+      }
+      lastIndex = descending ? remaining - 1 : size - remaining;
+      remaining--;
+      return get(lastIndex);
+    }
+
+    @Override
+    public void remove() {
+      if (lastIndex < 0) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      delete(lastIndex);
+      lastIndex = -1;
+      expectedModCount = modCount;
+    }
+  }
+}
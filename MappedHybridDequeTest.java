@@ -0,0 +1,185 @@
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * MappedHybridDeque Test Class - Behavior checked against ArrayDeque across reopens of the file.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+class MappedHybridDequeTest {
+
+  private Path file;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    file = Files.createTempFile("mapped-deque", ".dat");
+    Files.delete(file);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  void testSurvivesReopen() throws IOException {
+    ArrayDeque<Long> expected = new ArrayDeque<Long>();
+    Random rand = new Random(240);
+
+    // Each session continues where the last one stopped, growing the page ring from both ends
+    for (int session = 0; session < 5; session++) {
+      try (MappedHybridDeque<Long> deque = new MappedHybridDeque<Long>(file, RecordCodec.longs(),
+          4)) {
+        assertEquals(new ArrayList<Long>(expected), new ArrayList<Long>(deque));
+        for (int step = 0; step < 2000; step++) {
+          int op = rand.nextInt(6);
+          Long value = rand.nextLong();
+          if (op < 2) {
+            deque.offerFirst(value);
+            expected.offerFirst(value);
+          } else if (op < 4) {
+            deque.offerLast(value);
+            expected.offerLast(value);
+          } else if (op == 4) {
+            assertEquals(expected.pollFirst(), deque.pollFirst());
+          } else {
+            assertEquals(expected.pollLast(), deque.pollLast());
+          }
+          assertEquals(expected.size(), deque.size());
+        }
+        Long middle = deque.get(deque.size() / 2);
+        assertTrue(deque.removeFirstOccurrence(middle));
+        expected.removeFirstOccurrence(middle);
+      }
+    }
+
+    try (MappedHybridDeque<Long> deque = new MappedHybridDeque<Long>(file, RecordCodec.longs())) {
+      assertEquals(new ArrayList<Long>(expected), new ArrayList<Long>(deque));
+      deque.clear();
+    }
+    try (MappedHybridDeque<Long> deque = new MappedHybridDeque<Long>(file, RecordCodec.longs())) {
+      assertTrue(deque.isEmpty());
+      deque.offerFirst(1L);
+      assertEquals(Long.valueOf(1L), deque.peekLast());
+    }
+  }
+
+  @Test
+  void testGroupCommitAndLifecycle() throws IOException {
+    MappedHybridDeque<Integer> deque = new MappedHybridDeque<Integer>(file, RecordCodec.ints(), 8);
+    assertThrows(IllegalArgumentException.class, () -> {
+      deque.setSyncInterval(-1);
+    });
+    deque.setSyncInterval(16);
+    for (int i = 0; i < 100; i++) {
+      deque.offerLast(i);
+    }
+    deque.force();
+    deque.close();
+    deque.close();
+    assertThrows(IllegalStateException.class, () -> {
+      deque.pollFirst();
+    });
+
+    // A codec with a different record width cannot open the file
+    assertThrows(IOException.class, () -> {
+      new MappedHybridDeque<Long>(file, RecordCodec.longs());
+    });
+
+    try (MappedHybridDeque<Integer> reopened =
+        new MappedHybridDeque<Integer>(file, RecordCodec.ints())) {
+      assertEquals(100, reopened.size());
+      for (int i = 0; i < 100; i++) {
+        assertEquals(Integer.valueOf(i), reopened.pollFirst());
+      }
+    }
+  }
+
+  /**
+   * Overwrite an int in the header of the closed deque file.
+   */
+  private void patchHeader(int offset, int value) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+      buffer.putInt(value).flip();
+      channel.write(buffer, offset);
+    }
+  }
+
+  private int readHeader(int offset) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+      channel.read(buffer, offset);
+      return buffer.getInt(0);
+    }
+  }
+
+  @Test
+  void testHeaderValidationAndCommitWord() throws IOException {
+    try (MappedHybridDeque<Integer> deque =
+        new MappedHybridDeque<Integer>(file, RecordCodec.ints(), 8)) {
+      for (int i = 0; i < 20; i++) {
+        deque.offerLast(i);
+      }
+    }
+
+    // Header layout: block size at 8, capacity at 12, two 32-byte slots at 16 and 48 each with
+    // the size as a big-endian long at offset 24, and the commit word at 80
+    // A half-written update to the slot that is not current is ignored
+    int commit = readHeader(80);
+    int otherSlot = 16 + ((commit + 1) & 1) * 32;
+    patchHeader(otherSlot + 28, 12345);
+    try (MappedHybridDeque<Integer> deque =
+        new MappedHybridDeque<Integer>(file, RecordCodec.ints())) {
+      assertEquals(20, deque.size());
+      assertEquals(Integer.valueOf(19), deque.peekLast());
+    }
+
+    // Fields that cannot describe a deque are rejected
+    int currentSlot = 16 + (readHeader(80) & 1) * 32;
+    int size = readHeader(currentSlot + 28);
+    patchHeader(currentSlot + 28, size + 1);
+    assertThrows(IOException.class, () -> {
+      new MappedHybridDeque<Integer>(file, RecordCodec.ints()).close();
+    });
+    patchHeader(currentSlot + 28, size);
+    patchHeader(8, 0);
+    assertThrows(IOException.class, () -> {
+      new MappedHybridDeque<Integer>(file, RecordCodec.ints()).close();
+    });
+    patchHeader(8, 8);
+    patchHeader(12, 3);
+    assertThrows(IOException.class, () -> {
+      new MappedHybridDeque<Integer>(file, RecordCodec.ints()).close();
+    });
+
+    // A capacity far beyond the pages in the file is rejected before any page table is built
+    patchHeader(12, 1 << 30);
+    assertThrows(IOException.class, () -> {
+      new MappedHybridDeque<Integer>(file, RecordCodec.ints()).close();
+    });
+    int capacity = (int) ((Files.size(file) - 4096) / (8 * 4));
+    patchHeader(12, capacity * 2);
+    assertThrows(IOException.class, () -> {
+      new MappedHybridDeque<Integer>(file, RecordCodec.ints()).close();
+    });
+    patchHeader(12, capacity);
+    try (MappedHybridDeque<Integer> deque =
+        new MappedHybridDeque<Integer>(file, RecordCodec.ints())) {
+      assertEquals(20, deque.size());
+    }
+  }
+}
@@ -0,0 +1,363 @@
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Collection of up to 64 priority lanes, each a HybridDeque. Lane 0 has the highest priority.
+ * Elements are added to a chosen lane, and pollFirst takes the first element of the highest
+ * priority lane that is not empty. A bitmap of non-empty lanes lets pollFirst and peekFirst find
+ * that lane with a single bit scan, so their cost does not depend on the number of lanes.
+ * Iteration visits the lanes in priority order, each one front to back. This implementation does
+ * not allow null's to be added to the collection. Adding a null will result in a
+ * NullPointerException.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public class MultiLaneHybridDeque<E> extends AbstractCollection<E> {
+
+  /*
+   * IMPLEMENTATION NOTES ----------------------------------
+   *
+   * Bit i of nonEmpty is set exactly when lanes[i] holds at least one element. Every method that
+   * adds to or removes from a lane updates the bit before returning, so the highest priority
+   * non-empty lane is Long.numberOfTrailingZeros(nonEmpty) and the lowest is
+   * 63 - Long.numberOfLeadingZeros(nonEmpty). Both are 64 or -1 when every lane is empty.
+   */
+
+  private static final int MAX_LANES = Long.SIZE;
+
+  private final HybridDeque<E>[] lanes;
+  private long nonEmpty;
+  private int size;
+  private int modCount;
+
+  /**
+   * Create a deque with the given number of lanes, each using HybridDeque's default block size.
+   *
+   * @param laneCount Number of lanes, between 1 and 64
+   * @throws IllegalArgumentException if laneCount is out of range
+   */
+  public MultiLaneHybridDeque(int laneCount) {
+    this(laneCount, 0);
+  }
+
+  /**
+   * Create a deque with the given number of lanes whose blocks hold the given number of elements.
+   *
+   * @param laneCount Number of lanes, between 1 and 64
+   * @param blockSize Elements per block in each lane, or 0 for HybridDeque's default
+   * @throws IllegalArgumentException if laneCount is out of range or blockSize is negative or too
+   *         large
+   */
+  @SuppressWarnings("unchecked")
+  public MultiLaneHybridDeque(int laneCount, int blockSize) {
+    if (laneCount < 1 || laneCount > MAX_LANES) {
+      throw new IllegalArgumentException("Illegal lane count: " + laneCount);
+    }
+    if (blockSize < 0) {
+      throw new IllegalArgumentException("Illegal block size: " + blockSize);
+    }
+    lanes = (HybridDeque<E>[]) new HybridDeque<?>[laneCount];
+    for (int i = 0; i < laneCount; i++) {
+      lanes[i] = blockSize == 0 ? new HybridDeque<E>() : new HybridDeque<E>(blockSize);
+    }
+  }
+
+  /**
+   * Returns the number of lanes.
+   */
+  public int laneCount() {
+    return lanes.length;
+  }
+
+  /**
+   * Add an element to the front of a lane.
+   *
+   * @param lane The lane, 0 is the highest priority
+   * @param e The element to add
+   * @throws IndexOutOfBoundsException if lane is out of range
+   * @throws NullPointerException if e is null
+   */
+  public void offerFirst(int lane, E e) {
+    lane(lane).offerFirst(e);
+    added(lane);
+  }
+
+  /**
+   * Add an element to the end of a lane.
+   *
+   * @param lane The lane, 0 is the highest priority
+   * @param e The element to add
+   * @throws IndexOutOfBoundsException if lane is out of range
+   * @throws NullPointerException if e is null
+   */
+  public void offerLast(int lane, E e) {
+    lane(lane).offerLast(e);
+    added(lane);
+  }
+
+  /**
+   * Remove the first element of the highest priority lane that is not empty.
+   *
+   * @return The removed element, or null if every lane is empty
+   */
+  public E pollFirst() {
+    if (nonEmpty == 0) {
+      return null;
+    }
+    return pollFirst(Long.numberOfTrailingZeros(nonEmpty));
+  }
+
+  /**
+   * Remove the last element of the lowest priority lane that is not empty.
+   *
+   * @return The removed element, or null if every lane is empty
+   */
+  public E pollLast() {
+    if (nonEmpty == 0) {
+      return null;
+    }
+    return pollLast(MAX_LANES - 1 - Long.numberOfLeadingZeros(nonEmpty));
+  }
+
+  /**
+   * Return the element pollFirst would remove, without removing it.
+   *
+   * @return The element, or null if every lane is empty
+   */
+  public E peekFirst() {
+    if (nonEmpty == 0) {
+      return null;
+    }
+    return lanes[Long.numberOfTrailingZeros(nonEmpty)].peekFirst();
+  }
+
+  /**
+   * Return the element pollLast would remove, without removing it.
+   *
+   * @return The element, or null if every lane is empty
+   */
+  public E peekLast() {
+    if (nonEmpty == 0) {
+      return null;
+    }
+    return lanes[MAX_LANES - 1 - Long.numberOfLeadingZeros(nonEmpty)].peekLast();
+  }
+
+  /**
+   * Remove the first element of a lane.
+   *
+   * @param lane The lane, 0 is the highest priority
+   * @return The removed element, or null if the lane is empty
+   * @throws IndexOutOfBoundsException if lane is out of range
+   */
+  public E pollFirst(int lane) {
+    E e = lane(lane).pollFirst();
+    if (e != null) {
+      removed(lane, 1);
+    }
+    return e;
+  }
+
+  /**
+   * Remove the last element of a lane.
+   *
+   * @param lane The lane, 0 is the highest priority
+   * @return The removed element, or null if the lane is empty
+   * @throws IndexOutOfBoundsException if lane is out of range
+   */
+  public E pollLast(int lane) {
+    E e = lane(lane).pollLast();
+    if (e != null) {
+      removed(lane, 1);
+    }
+    return e;
+  }
+
+  /**
+   * Return the first element of a lane without removing it.
+   *
+   * @param lane The lane, 0 is the highest priority
+   * @return The element, or null if the lane is empty
+   * @throws IndexOutOfBoundsException if lane is out of range
+   */
+  public E peekFirst(int lane) {
+    return lane(lane).peekFirst();
+  }
+
+  /**
+   * Returns the number of elements in a lane.
+   *
+   * @param lane The lane, 0 is the highest priority
+   * @throws IndexOutOfBoundsException if lane is out of range
+   */
+  public int laneSize(int lane) {
+    return lane(lane).size();
+  }
+
+  /**
+   * Returns a bitmap with bit i set when lane i is not empty.
+   */
+  public long nonEmptyLanes() {
+    return nonEmpty;
+  }
+
+  /**
+   * Remove every element of a lane and add them to the given collection, front to back, block
+   * segment by block segment.
+   *
+   * @param lane The lane, 0 is the highest priority
+   * @param c The collection to add the elements to
+   * @return The number of elements moved
+   * @throws IndexOutOfBoundsException if lane is out of range
+   */
+  public int drainLane(int lane, Collection<? super E> c) {
+    return drainLane(lane, c, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Remove up to max elements from the front of a lane and add them to the given collection. If c
+   * throws partway through, the elements already taken from the lane stay removed.
+   *
+   * @param lane The lane, 0 is the highest priority
+   * @param c The collection to add the elements to
+   * @param max The maximum number of elements to move
+   * @return The number of elements moved
+   * @throws IndexOutOfBoundsException if lane is out of range
+   * @throws IllegalArgumentException if max is negative or c is this deque
+   */
+  public int drainLane(int lane, Collection<? super E> c, int max) {
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    HybridDeque<E> source = lane(lane);
+    int before = source.size();
+    try {
+      return source.drainTo(c, max);
+    } finally {
+      // Count whatever left the lane, even if c threw partway through
+      removed(lane, before - source.size());
+    }
+  }
+
+  /**
+   * Remove up to max elements in priority order, draining whole lanes before moving on to the
+   * next, and add them to the given collection.
+   *
+   * @param c The collection to add the elements to
+   * @param max The maximum number of elements to move
+   * @return The number of elements moved
+   * @throws IllegalArgumentException if max is negative or c is this deque
+   */
+  public int drainTo(Collection<? super E> c, int max) {
+    if (max < 0) {
+      throw new IllegalArgumentException("max < 0: " + max);
+    }
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    int total = 0;
+    while (total < max && nonEmpty != 0) {
+      total += drainLane(Long.numberOfTrailingZeros(nonEmpty), c, max - total);
+    }
+    return total;
+  }
+
+  private HybridDeque<E> lane(int lane) {
+    return lanes[Objects.checkIndex(lane, lanes.length)];
+  }
+
+  private void added(int lane) {
+    nonEmpty |= 1L << lane;
+    size++;
+    modCount++;
+  }
+
+  private void removed(int lane, int count) {
+    if (lanes[lane].isEmpty()) {
+      nonEmpty &= ~(1L << lane);
+    }
+    if (count == 0) {
+      return;
+    }
+    size -= count;
+    modCount++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return nonEmpty == 0;
+  }
+
+  @Override
+  public void clear() {
+    while (nonEmpty != 0) {
+      int lane = Long.numberOfTrailingZeros(nonEmpty);
+      lanes[lane].clear();
+      nonEmpty &= ~(1L << lane);
+    }
+    size = 0;
+    modCount++;
+  }
+
+  /**
+   * Returns an iterator over the lanes in priority order, each front to back. Empty lanes are
+   * skipped using the bitmap. The iterator is fail-fast and supports remove.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new LaneIterator();
+  }
+
+  private class LaneIterator implements Iterator<E> {
+    // Non-empty lanes not visited yet
+    private long pending = nonEmpty;
+    private int lane = -1;
+    private Iterator<E> current;
+    private int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return (current != null && current.hasNext()) || pending != 0;
+    }
+
+    @Override
+    public E next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      while (current == null || !current.hasNext()) {
+        if (pending == 0) {
+          throw new NoSuchElementException();
+        }
+        lane = Long.numberOfTrailingZeros(pending);
+        pending &= pending - 1;
+        current = lanes[lane].iterator();
+      }
+      return current.next();
+    }
+
+    @Override
+    public void remove() {
+      if (current == null) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      current.remove();
+      removed(lane, 1);
+      expectedModCount = modCount;
+    }
+  }
+}
@@ -0,0 +1,196 @@
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * MultiLaneHybridDeque Test Class - Priority order, the non-empty lane bitmap and lane draining.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+class MultiLaneHybridDequeTest {
+
+  @Test
+  void testConstructorAndLanes() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new MultiLaneHybridDeque<Integer>(0);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new MultiLaneHybridDeque<Integer>(65);
+    });
+
+    MultiLaneHybridDeque<Integer> deque = new MultiLaneHybridDeque<Integer>(64, 4);
+    assertEquals(64, deque.laneCount());
+    assertTrue(deque.isEmpty());
+    assertNull(deque.pollFirst());
+    assertNull(deque.pollLast());
+    assertNull(deque.peekFirst());
+    assertThrows(IndexOutOfBoundsException.class, () -> {
+      deque.offerLast(64, 1);
+    });
+    assertThrows(NullPointerException.class, () -> {
+      deque.offerLast(0, null);
+    });
+    assertEquals(0, deque.size());
+    assertEquals(0L, deque.nonEmptyLanes());
+
+    deque.offerLast(63, 630);
+    deque.offerLast(5, 50);
+    deque.offerFirst(5, 49);
+    deque.offerLast(0, 0);
+    assertEquals((1L << 63) | (1L << 5) | 1L, deque.nonEmptyLanes());
+    assertEquals(4, deque.size());
+    assertEquals(2, deque.laneSize(5));
+    assertEquals(Arrays.asList(0, 49, 50, 630), new ArrayList<Integer>(deque));
+
+    assertEquals(Integer.valueOf(0), deque.peekFirst());
+    assertEquals(Integer.valueOf(630), deque.peekLast());
+    assertEquals(Integer.valueOf(0), deque.pollFirst());
+    assertEquals(Integer.valueOf(630), deque.pollLast());
+    assertEquals(1L << 5, deque.nonEmptyLanes());
+    assertEquals(Integer.valueOf(49), deque.pollFirst());
+    assertEquals(Integer.valueOf(50), deque.pollFirst());
+    assertTrue(deque.isEmpty());
+    assertEquals(0L, deque.nonEmptyLanes());
+  }
+
+  @Test
+  void testAgainstScan() {
+    // Compare with scanning one ArrayDeque per priority
+    Random random = new Random(25);
+    MultiLaneHybridDeque<Integer> deque = new MultiLaneHybridDeque<Integer>(10, 4);
+    List<ArrayDeque<Integer>> model = new ArrayList<ArrayDeque<Integer>>();
+    for (int i = 0; i < 10; i++) {
+      model.add(new ArrayDeque<Integer>());
+    }
+    for (int step = 0; step < 20000; step++) {
+      int lane = random.nextInt(10);
+      int operation = random.nextInt(5);
+      if (operation < 2) {
+        deque.offerLast(lane, step);
+        model.get(lane).offerLast(step);
+      } else if (operation == 2) {
+        deque.offerFirst(lane, step);
+        model.get(lane).offerFirst(step);
+      } else if (operation == 3) {
+        Integer expected = null;
+        for (ArrayDeque<Integer> queue : model) {
+          if (!queue.isEmpty()) {
+            expected = queue.pollFirst();
+            break;
+          }
+        }
+        assertEquals(expected, deque.pollFirst());
+      } else {
+        assertEquals(model.get(lane).pollLast(), deque.pollLast(lane));
+      }
+
+      long bits = 0;
+      int total = 0;
+      for (int i = 0; i < 10; i++) {
+        if (!model.get(i).isEmpty()) {
+          bits |= 1L << i;
+        }
+        total += model.get(i).size();
+      }
+      assertEquals(bits, deque.nonEmptyLanes());
+      assertEquals(total, deque.size());
+    }
+  }
+
+  @Test
+  void testDrainAndIteratorRemove() {
+    MultiLaneHybridDeque<Integer> deque = new MultiLaneHybridDeque<Integer>(3, 2);
+    for (int i = 0; i < 10; i++) {
+      deque.offerLast(i % 3, i);
+    }
+
+    List<Integer> drained = new ArrayList<Integer>();
+    assertEquals(3, deque.drainLane(1, drained));
+    assertEquals(Arrays.asList(1, 4, 7), drained);
+    assertEquals(0b101L, deque.nonEmptyLanes());
+    assertEquals(0, deque.drainLane(1, drained));
+    assertThrows(IllegalArgumentException.class, () -> {
+      deque.drainLane(0, deque);
+    });
+
+    // Lane 0 holds 0, 3, 6, 9 and lane 2 holds 2, 5, 8
+    drained.clear();
+    assertEquals(5, deque.drainTo(drained, 5));
+    assertEquals(Arrays.asList(0, 3, 6, 9, 2), drained);
+    assertEquals(0b100L, deque.nonEmptyLanes());
+    assertEquals(2, deque.size());
+
+    deque.offerLast(0, 100);
+    Iterator<Integer> iterator = deque.iterator();
+    assertEquals(Integer.valueOf(100), iterator.next());
+    iterator.remove();
+    assertEquals(0b100L, deque.nonEmptyLanes());
+    assertEquals(Integer.valueOf(5), iterator.next());
+    iterator.remove();
+    assertEquals(Integer.valueOf(8), iterator.next());
+    assertFalse(iterator.hasNext());
+    assertEquals(Arrays.asList(8), new ArrayList<Integer>(deque));
+
+    Iterator<Integer> stale = deque.iterator();
+    deque.offerLast(1, 1);
+    assertThrows(ConcurrentModificationException.class, () -> {
+      stale.next();
+    });
+
+    assertTrue(deque.remove(Integer.valueOf(8)));
+    assertEquals(0b10L, deque.nonEmptyLanes());
+    deque.clear();
+    assertTrue(deque.isEmpty());
+    assertEquals(0L, deque.nonEmptyLanes());
+  }
+
+  @Test
+  void testDrainEdgeCases() {
+    MultiLaneHybridDeque<Integer> deque = new MultiLaneHybridDeque<Integer>(3, 2);
+    assertThrows(IllegalArgumentException.class, () -> {
+      deque.drainTo(deque, 10);
+    });
+
+    // Draining nothing is not a modification
+    deque.offerLast(2, 1);
+    Iterator<Integer> iterator = deque.iterator();
+    assertEquals(0, deque.drainLane(0, new ArrayList<Integer>()));
+    assertEquals(0, deque.drainLane(2, new ArrayList<Integer>(), 0));
+    assertEquals(Integer.valueOf(1), iterator.next());
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  void testDrainIntoFullQueue() {
+    MultiLaneHybridDeque<Integer> deque = new MultiLaneHybridDeque<Integer>(2, 2);
+    for (int i = 0; i < 6; i++) {
+      deque.offerLast(0, i);
+    }
+    deque.offerLast(1, 100);
+
+    // The queue fills up partway through lane 0; what left the lane must still be counted
+    ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(3);
+    assertThrows(IllegalStateException.class, () -> {
+      deque.drainTo(queue, 10);
+    });
+    int left = deque.laneSize(0);
+    assertEquals(left + 1, deque.size());
+    assertEquals(left == 0 ? 0b10L : 0b11L, deque.nonEmptyLanes());
+    while (deque.laneSize(0) > 0) {
+      deque.pollFirst();
+    }
+    assertEquals(Integer.valueOf(100), deque.pollFirst());
+    assertTrue(deque.isEmpty());
+    assertEquals(0, deque.size());
+    assertNull(deque.pollFirst());
+  }
+}
@@ -0,0 +1,468 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Version of HybridDeque that keeps its elements outside the Java heap. Each block is a slice of a
+ * direct ByteBuffer arena and holds fixed-width records written by a RecordCodec, so the only heap
+ * objects are the block directory and the arena buffers themselves. Elements are decoded again on
+ * every read, so the objects returned are copies. Call close when the deque is no longer needed;
+ * any other operation on a closed deque throws an IllegalStateException. Java has no supported way
+ * to free a direct buffer on demand, so close does not itself return the memory: it drops every
+ * reference to it, and the memory is released when the garbage collector reclaims the buffers.
+ * This implementation does not allow null's to be added to the collection. Adding a null will
+ * result in a NullPointerException.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public class OffHeapHybridDeque<E> extends AbstractDeque<E> implements AutoCloseable {
+
+  /*
+   * IMPLEMENTATION NOTES ----------------------------------
+   *
+   * The layout follows HybridDeque's block directory: blocks[leftSlot] to blocks[rightSlot] are
+   * the live blocks, the first record is at leftIndex in the left block and the last at rightIndex
+   * in the right block. Indexes count records, not bytes.
+   *
+   * Blocks are carved out of arena buffers of BLOCKS_PER_ARENA blocks each. Drained blocks go on a
+   * free list of at most maxFreeBlocks entries and are reused before anything new is carved. Only
+   * the arena currently being carved is referenced directly; every other arena stays reachable
+   * through its blocks alone (a slice keeps its parent buffer alive). Blocks beyond the free list
+   * cap are dropped, and an arena's memory is returned to the system once the garbage collector
+   * finds all of its blocks unreachable. close drops every block and the current arena at once.
+   */
+
+  private static final int DEFAULT_BLOCK_SIZE = 1024;
+  private static final int BLOCKS_PER_ARENA = 16;
+  private static final int INITIAL_DIRECTORY_LENGTH = 8;
+  private static final int DEFAULT_MAX_FREE_BLOCKS = 4 * BLOCKS_PER_ARENA;
+
+  private final RecordCodec<E> codec;
+  private final int width;
+  private final int blockSize;
+
+  private ByteBuffer[] blocks;
+  private int leftSlot;
+  private int leftIndex;
+  private int rightSlot;
+  private int rightIndex;
+  private int size;
+  private int modCount;
+
+  private ByteBuffer arena;
+  private int arenaBlocksUsed = BLOCKS_PER_ARENA;
+  private long heldBlocks;
+  private List<ByteBuffer> freeBlocks = new ArrayList<ByteBuffer>();
+  private int maxFreeBlocks = DEFAULT_MAX_FREE_BLOCKS;
+  private boolean closed;
+
+  /**
+   * Create an off-heap deque with the default block size.
+   *
+   * @param codec Codec for the elements
+   */
+  public OffHeapHybridDeque(RecordCodec<E> codec) {
+    this(codec, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Create an off-heap deque whose blocks hold the given number of records.
+   *
+   * @param codec Codec for the elements
+   * @param blockSize Records per block, at least 2
+   * @throws IllegalArgumentException if blockSize is less than 2 or a block would not fit in an
+   *         int number of bytes
+   */
+  public OffHeapHybridDeque(RecordCodec<E> codec, int blockSize) {
+    this.codec = Objects.requireNonNull(codec);
+    this.width = codec.width();
+    if (width < 1) {
+      throw new IllegalArgumentException("Illegal record width: " + width);
+    }
+    if (blockSize < 2 || (long) blockSize * width * BLOCKS_PER_ARENA > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Illegal block size: " + blockSize);
+    }
+    this.blockSize = blockSize;
+    blocks = new ByteBuffer[INITIAL_DIRECTORY_LENGTH];
+    leftSlot = blocks.length / 2;
+    blocks[leftSlot] = newBlock();
+    recenter();
+  }
+
+  @Override
+  public boolean offerFirst(E e) {
+    ensureOpen();
+    if (e == null) {
+      throw new NullPointerException();
+    }
+
+    if (leftIndex == 0) {
+      if (leftSlot == 0) {
+        growDirectory();
+      }
+      leftSlot--;
+      blocks[leftSlot] = newBlock();
+      leftIndex = blockSize;
+    }
+    leftIndex--;
+    codec.write(blocks[leftSlot], leftIndex * width, e);
+    size++;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public boolean offerLast(E e) {
+    ensureOpen();
+    if (e == null) {
+      throw new NullPointerException();
+    }
+
+    if (rightIndex == blockSize - 1) {
+      if (rightSlot == blocks.length - 1) {
+        growDirectory();
+      }
+      rightSlot++;
+      blocks[rightSlot] = newBlock();
+      rightIndex = -1;
+    }
+    rightIndex++;
+    codec.write(blocks[rightSlot], rightIndex * width, e);
+    size++;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public E pollFirst() {
+    ensureOpen();
+    if (size == 0) {
+      return null;
+    }
+
+    E temp = codec.read(blocks[leftSlot], leftIndex * width);
+    size--;
+    modCount++;
+    if (size == 0) {
+      recenter();
+    } else if (leftIndex == blockSize - 1) {
+      releaseBlock(blocks[leftSlot]);
+      blocks[leftSlot] = null;
+      leftSlot++;
+      leftIndex = 0;
+    } else {
+      leftIndex++;
+    }
+    return temp;
+  }
+
+  @Override
+  public E pollLast() {
+    ensureOpen();
+    if (size == 0) {
+      return null;
+    }
+
+    E temp = codec.read(blocks[rightSlot], rightIndex * width);
+    removeLastRecord();
+    return temp;
+  }
+
+  /**
+   * Drop the last record without decoding it.
+   */
+  private void removeLastRecord() {
+    size--;
+    modCount++;
+    if (size == 0) {
+      recenter();
+    } else if (rightIndex == 0) {
+      releaseBlock(blocks[rightSlot]);
+      blocks[rightSlot] = null;
+      rightSlot--;
+      rightIndex = blockSize - 1;
+    } else {
+      rightIndex--;
+    }
+  }
+
+  @Override
+  public E peekFirst() {
+    ensureOpen();
+    if (size == 0) {
+      return null;
+    }
+    return codec.read(blocks[leftSlot], leftIndex * width);
+  }
+
+  @Override
+  public E peekLast() {
+    ensureOpen();
+    if (size == 0) {
+      return null;
+    }
+    return codec.read(blocks[rightSlot], rightIndex * width);
+  }
+
+  /**
+   * Returns the element at the given position, decoded from its record.
+   *
+   * @param index A position between 0 and size - 1
+   * @throws IndexOutOfBoundsException if index is out of range
+   */
+  public E get(int index) {
+    ensureOpen();
+    Objects.checkIndex(index, size);
+    int position = leftIndex + index;
+    return codec.read(blocks[leftSlot + position / blockSize], (position % blockSize) * width);
+  }
+
+  @Override
+  public boolean removeFirstOccurrence(Object o) {
+    ensureOpen();
+    if (o == null) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (o.equals(get(i))) {
+        delete(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean removeLastOccurrence(Object o) {
+    ensureOpen();
+    if (o == null) {
+      return false;
+    }
+    for (int i = size - 1; i >= 0; i--) {
+      if (o.equals(get(i))) {
+        delete(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return removeFirstOccurrence(o);
+  }
+
+  /**
+   * Remove the record at a position by copying the records after it back one record.
+   */
+  private void delete(int index) {
+    int position = leftIndex + index;
+    int end = leftIndex + size - 1;
+    for (; position < end; position++) {
+      ByteBuffer to = blocks[leftSlot + position / blockSize];
+      ByteBuffer from = blocks[leftSlot + (position + 1) / blockSize];
+      to.put((position % blockSize) * width, from, ((position + 1) % blockSize) * width, width);
+    }
+    removeLastRecord();
+  }
+
+  /**
+   * Take a block from the free list, or slice one from the current arena, allocating a new arena
+   * if it is used up.
+   */
+  private ByteBuffer newBlock() {
+    if (!freeBlocks.isEmpty()) {
+      return freeBlocks.remove(freeBlocks.size() - 1);
+    }
+    int blockBytes = blockSize * width;
+    if (arenaBlocksUsed == BLOCKS_PER_ARENA) {
+      arena = ByteBuffer.allocateDirect(blockBytes * BLOCKS_PER_ARENA);
+      arenaBlocksUsed = 0;
+    }
+    ByteBuffer block = arena.slice(arenaBlocksUsed * blockBytes, blockBytes);
+    arenaBlocksUsed++;
+    heldBlocks++;
+    return block.order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Put a drained block on the free list, or drop it if the list is full.
+   */
+  private void releaseBlock(ByteBuffer block) {
+    if (freeBlocks.size() < maxFreeBlocks) {
+      freeBlocks.add(block);
+    } else {
+      heldBlocks--;
+    }
+  }
+
+  /**
+   * Set how many drained blocks this deque keeps for reuse. Blocks beyond this limit are dropped;
+   * their memory is released once the garbage collector finds every block of their arena
+   * unreachable.
+   *
+   * @param maxFreeBlocks The maximum number of free blocks, zero disables reuse
+   * @throws IllegalArgumentException if maxFreeBlocks is negative
+   */
+  public void setMaxFreeBlocks(int maxFreeBlocks) {
+    ensureOpen();
+    if (maxFreeBlocks < 0) {
+      throw new IllegalArgumentException("maxFreeBlocks < 0: " + maxFreeBlocks);
+    }
+    this.maxFreeBlocks = maxFreeBlocks;
+    while (freeBlocks.size() > maxFreeBlocks) {
+      freeBlocks.remove(freeBlocks.size() - 1);
+      heldBlocks--;
+    }
+  }
+
+  /**
+   * Put an empty deque back in the middle of its left block so that both ends have room to grow.
+   */
+  private void recenter() {
+    ByteBuffer block = blocks[leftSlot];
+    for (int slot = leftSlot + 1; slot <= rightSlot; slot++) {
+      releaseBlock(blocks[slot]);
+      blocks[slot] = null;
+    }
+    blocks[leftSlot] = null;
+    leftSlot = blocks.length / 2;
+    rightSlot = leftSlot;
+    blocks[leftSlot] = block;
+
+    int center = (blockSize - 1) / 2;
+    leftIndex = center + 1;
+    rightIndex = center;
+  }
+
+  /**
+   * Make room at both ends of the block directory. The live slots are moved back to the middle,
+   * into a directory twice as long if more than half of the slots are in use.
+   */
+  private void growDirectory() {
+    int used = rightSlot - leftSlot + 1;
+    int length = blocks.length;
+    if (used * 2 > length) {
+      length *= 2;
+    }
+    ByteBuffer[] directory = length == blocks.length ? blocks : new ByteBuffer[length];
+    int slot = (length - used) / 2;
+    System.arraycopy(blocks, leftSlot, directory, slot, used);
+    Arrays.fill(directory, 0, slot, null);
+    Arrays.fill(directory, slot + used, length, null);
+    blocks = directory;
+    leftSlot = slot;
+    rightSlot = slot + used - 1;
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Deque is closed");
+    }
+  }
+
+  /**
+   * Number of bytes of off-heap memory held by this deque: its live and free blocks and the part
+   * of the current arena not yet carved into blocks. Dropped blocks are not counted, although
+   * their memory stays allocated until the garbage collector reclaims their arena.
+   */
+  public long reservedBytes() {
+    long blocksHeld = heldBlocks + (arena == null ? 0 : BLOCKS_PER_ARENA - arenaBlocksUsed);
+    return blocksHeld * blockSize * width;
+  }
+
+  /**
+   * Drop every reference to the off-heap memory. The deque is empty and unusable afterwards.
+   * This does not free the memory itself; it is released when the garbage collector reclaims the
+   * arena buffers, which nothing in this deque refers to any more. Closing a closed deque has no
+   * effect.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    blocks = new ByteBuffer[0];
+    arena = null;
+    heldBlocks = 0;
+    freeBlocks = new ArrayList<ByteBuffer>();
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    ensureOpen();
+    size = 0;
+    modCount++;
+    recenter();
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    ensureOpen();
+    return new CustomIterator(false);
+  }
+
+  @Override
+  public Iterator<E> descendingIterator() {
+    ensureOpen();
+    return new CustomIterator(true);
+  }
+
+  private class CustomIterator implements Iterator<E> {
+    private final boolean descending;
+    private int remaining = size;
+    private int lastIndex = -1;
+    private int expectedModCount = modCount;
+
+    CustomIterator(boolean descending) {
+      this.descending = descending;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    public E next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (remaining == 0) {
+        throw new NoSuchElementException();
+      }
+      lastIndex = descending ? remaining - 1 : size - remaining;
+      remaining--;
+      return get(lastIndex);
+    }
+
+    @Override
+    public void remove() {
+      if (lastIndex < 0) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      delete(lastIndex);
+      lastIndex = -1;
+      expectedModCount = modCount;
+    }
+  }
+}
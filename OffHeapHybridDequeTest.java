@@ -0,0 +1,143 @@
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * OffHeapHybridDeque Test Class - Codecs, behavior checked against ArrayDeque, and the close
+ * lifecycle.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+class OffHeapHybridDequeTest {
+
+  @Test
+  void testCodecs() {
+    ByteBuffer buffer = ByteBuffer.allocate(24);
+    RecordCodec.ints().write(buffer, 4, -17);
+    RecordCodec.longs().write(buffer, 8, Long.MIN_VALUE);
+    RecordCodec.doubles().write(buffer, 16, 2.5);
+    assertEquals(0, buffer.position());
+    assertEquals(Integer.valueOf(-17), RecordCodec.ints().read(buffer, 4));
+    assertEquals(Long.valueOf(Long.MIN_VALUE), RecordCodec.longs().read(buffer, 8));
+    assertEquals(Double.valueOf(2.5), RecordCodec.doubles().read(buffer, 16));
+    assertEquals(8, RecordCodec.longs().width());
+  }
+
+  @Test
+  void testMatchesArrayDeque() {
+    OffHeapHybridDeque<Integer> deque = new OffHeapHybridDeque<Integer>(RecordCodec.ints(), 4);
+    ArrayDeque<Integer> expected = new ArrayDeque<Integer>();
+    assertThrows(NullPointerException.class, () -> {
+      deque.offerLast(null);
+    });
+    assertNull(deque.pollFirst());
+
+    Random rand = new Random(240);
+    for (int step = 0; step < 20000; step++) {
+      int op = rand.nextInt(8);
+      Integer value = rand.nextInt(40);
+      if (op < 2) {
+        deque.offerFirst(value);
+        expected.offerFirst(value);
+      } else if (op < 4) {
+        deque.offerLast(value);
+        expected.offerLast(value);
+      } else if (op == 4) {
+        assertEquals(expected.pollFirst(), deque.pollFirst());
+      } else if (op == 5) {
+        assertEquals(expected.pollLast(), deque.pollLast());
+      } else if (op == 6) {
+        assertEquals(expected.removeFirstOccurrence(value), deque.removeFirstOccurrence(value));
+      } else {
+        assertEquals(expected.removeLastOccurrence(value), deque.removeLastOccurrence(value));
+      }
+      assertEquals(expected.size(), deque.size());
+      assertEquals(expected.peekFirst(), deque.peekFirst());
+      assertEquals(expected.peekLast(), deque.peekLast());
+    }
+    assertEquals(new ArrayList<Integer>(expected), new ArrayList<Integer>(deque));
+
+    List<Integer> backwards = new ArrayList<Integer>();
+    deque.descendingIterator().forEachRemaining(backwards::add);
+    List<Integer> expectedBackwards = new ArrayList<Integer>();
+    expected.descendingIterator().forEachRemaining(expectedBackwards::add);
+    assertEquals(expectedBackwards, backwards);
+
+    // Iterator removal of every even value
+    Iterator<Integer> it = deque.iterator();
+    while (it.hasNext()) {
+      if (it.next() % 2 == 0) {
+        it.remove();
+      }
+    }
+    expected.removeIf(v -> v % 2 == 0);
+    assertEquals(new ArrayList<Integer>(expected), new ArrayList<Integer>(deque));
+  }
+
+  @Test
+  void testArenasAndClose() {
+    OffHeapHybridDeque<Long> deque = new OffHeapHybridDeque<Long>(RecordCodec.longs(), 8);
+    assertEquals(16 * 8 * 8, deque.reservedBytes());
+
+    // 40 blocks of records need three arenas; draining and refilling reuses them
+    for (long i = 0; i < 320; i++) {
+      deque.offerLast(i);
+    }
+    assertEquals(3 * 16 * 8 * 8, deque.reservedBytes());
+    for (long i = 0; i < 320; i++) {
+      assertEquals(Long.valueOf(i), deque.get((int) i));
+    }
+    for (int round = 0; round < 10; round++) {
+      for (long i = 0; i < 320; i++) {
+        assertEquals(Long.valueOf(i), deque.pollFirst());
+        deque.offerLast(i);
+      }
+    }
+    assertEquals(3 * 16 * 8 * 8, deque.reservedBytes());
+
+    deque.close();
+    deque.close();
+    assertEquals(0, deque.size());
+    assertEquals(0, deque.reservedBytes());
+    assertThrows(IllegalStateException.class, () -> {
+      deque.offerFirst(1L);
+    });
+    assertThrows(IllegalStateException.class, () -> {
+      deque.pollLast();
+    });
+  }
+
+  @Test
+  void testFreeBlockCap() {
+    OffHeapHybridDeque<Long> deque = new OffHeapHybridDeque<Long>(RecordCodec.longs(), 8);
+    assertThrows(IllegalArgumentException.class, () -> {
+      deque.setMaxFreeBlocks(-1);
+    });
+    for (long i = 0; i < 320; i++) {
+      deque.offerLast(i);
+    }
+
+    // Only two drained blocks are kept; the rest are dropped and no longer counted
+    deque.setMaxFreeBlocks(2);
+    for (long i = 0; i < 320; i++) {
+      assertEquals(Long.valueOf(i), deque.pollFirst());
+    }
+    assertTrue(deque.reservedBytes() <= (1 + 2 + 8) * 8 * 8, "held " + deque.reservedBytes());
+
+    deque.offerLast(7L);
+    assertEquals(Long.valueOf(7), deque.peekFirst());
+    deque.setMaxFreeBlocks(0);
+    assertTrue(deque.reservedBytes() <= (1 + 8) * 8 * 8, "held " + deque.reservedBytes());
+    deque.close();
+    assertThrows(IllegalStateException.class, () -> {
+      deque.setMaxFreeBlocks(4);
+    });
+  }
+}
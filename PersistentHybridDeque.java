@@ -0,0 +1,386 @@
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable version of HybridDeque. withFirst, withLast, withoutFirst and withoutLast return a new
+ * deque and leave this one unchanged, and the two versions share almost all of their structure, so
+ * keeping old versions around is cheap. Like HybridDeque, elements are stored in fixed-size arrays
+ * (chunks) rather than one node per element, so iteration walks whole arrays. Each operation takes
+ * amortized constant time when every version is used once; repeatedly removing from the same old
+ * version may pay for the occasional rebalance more than once. This implementation does not allow
+ * null's to be added to the collection. Adding a null will result in a NullPointerException.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public final class PersistentHybridDeque<E> extends AbstractCollection<E> {
+
+  /*
+   * IMPLEMENTATION NOTES ----------------------------------
+   *
+   * A deque is, front to back:
+   *
+   * front, frontChunks (head first), rearChunks (last node first), rear
+   *
+   * front and rear are small arrays of 0 to CHUNK_SIZE elements, stored front to back. They are
+   * never changed; adding or removing at an end copies the end array, which costs at most
+   * CHUNK_SIZE references. When an end array is full it is pushed whole onto its chunk list, and
+   * when it is empty the next chunk is popped to replace it.
+   *
+   * frontChunks and rearChunks are immutable singly linked lists of full chunks. frontChunks starts
+   * with the chunk nearest the front and rearChunks with the chunk nearest the back, so both ends
+   * push and pop at the head of a list. When an end runs out of both its array and its chunks, half
+   * of the other list is moved over, rebuilding only the list nodes; the chunk arrays themselves
+   * are shared.
+   */
+
+  private static final int CHUNK_SIZE = 32;
+  private static final Object[] NO_ELEMENTS = new Object[0];
+  private static final PersistentHybridDeque<?> EMPTY =
+      new PersistentHybridDeque<Object>(NO_ELEMENTS, null, null, NO_ELEMENTS, 0);
+
+  private final Object[] front;
+  private final Chunk frontChunks;
+  private final Chunk rearChunks;
+  private final Object[] rear;
+  private final int size;
+
+  /**
+   * Immutable list node holding one full chunk of CHUNK_SIZE elements, stored front to back. Each
+   * node also knows the length and the final node of the list it starts, so the far end of a list
+   * can be peeked without walking it.
+   */
+  private static final class Chunk {
+    private final Object[] elements;
+    private final Chunk next;
+    private final Chunk last;
+    private final int length;
+
+    /**
+     * Chunk Constructor.
+     *
+     * @param elements A full chunk, never changed afterwards
+     * @param next The rest of the list, or null
+     */
+    Chunk(Object[] elements, Chunk next) {
+      this.elements = elements;
+      this.next = next;
+      this.last = next == null ? this : next.last;
+      this.length = next == null ? 1 : next.length + 1;
+    }
+  }
+
+  private PersistentHybridDeque(Object[] front, Chunk frontChunks, Chunk rearChunks,
+      Object[] rear, int size) {
+    this.front = front;
+    this.frontChunks = frontChunks;
+    this.rearChunks = rearChunks;
+    this.rear = rear;
+    this.size = size;
+  }
+
+  /**
+   * Returns the empty deque.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> PersistentHybridDeque<E> empty() {
+    return (PersistentHybridDeque<E>) EMPTY;
+  }
+
+  /**
+   * Returns a deque with the given elements, in iteration order.
+   *
+   * @param elements The elements to add
+   * @throws NullPointerException if any element is null
+   */
+  public static <E> PersistentHybridDeque<E> of(Iterable<? extends E> elements) {
+    PersistentHybridDeque<E> deque = empty();
+    for (E e : elements) {
+      deque = deque.withLast(e);
+    }
+    return deque;
+  }
+
+  /**
+   * Returns a deque with the given element added to the front of this one.
+   *
+   * @param e The element to add
+   * @throws NullPointerException if e is null
+   */
+  public PersistentHybridDeque<E> withFirst(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    if (front.length == CHUNK_SIZE) {
+      return new PersistentHybridDeque<E>(new Object[] {e}, new Chunk(front, frontChunks),
+          rearChunks, rear, size + 1);
+    }
+    Object[] elements = new Object[front.length + 1];
+    elements[0] = e;
+    System.arraycopy(front, 0, elements, 1, front.length);
+    return new PersistentHybridDeque<E>(elements, frontChunks, rearChunks, rear, size + 1);
+  }
+
+  /**
+   * Returns a deque with the given element added to the end of this one.
+   *
+   * @param e The element to add
+   * @throws NullPointerException if e is null
+   */
+  public PersistentHybridDeque<E> withLast(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    if (rear.length == CHUNK_SIZE) {
+      return new PersistentHybridDeque<E>(front, frontChunks, new Chunk(rear, rearChunks),
+          new Object[] {e}, size + 1);
+    }
+    Object[] elements = new Object[rear.length + 1];
+    System.arraycopy(rear, 0, elements, 0, rear.length);
+    elements[rear.length] = e;
+    return new PersistentHybridDeque<E>(front, frontChunks, rearChunks, elements, size + 1);
+  }
+
+  /**
+   * Returns a deque without the first element of this one.
+   *
+   * @throws NoSuchElementException if this deque is empty
+   */
+  public PersistentHybridDeque<E> withoutFirst() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    if (size == 1) {
+      return empty();
+    }
+    if (front.length > 0) {
+      return new PersistentHybridDeque<E>(dropFirst(front), frontChunks, rearChunks, rear,
+          size - 1);
+    }
+    if (frontChunks != null) {
+      return new PersistentHybridDeque<E>(dropFirst(frontChunks.elements), frontChunks.next,
+          rearChunks, rear, size - 1);
+    }
+    if (rearChunks == null) {
+      return new PersistentHybridDeque<E>(NO_ELEMENTS, null, null, dropFirst(rear), size - 1);
+    }
+
+    // Move the front half of the rear chunks over to the front
+    Chunk[] chunks = toArray(rearChunks);
+    int keep = chunks.length / 2;
+    Chunk moved = null;
+    for (int i = keep; i < chunks.length - 1; i++) {
+      moved = new Chunk(chunks[i].elements, moved);
+    }
+    return new PersistentHybridDeque<E>(dropFirst(chunks[chunks.length - 1].elements), moved,
+        prefix(chunks, keep), rear, size - 1);
+  }
+
+  /**
+   * Returns a deque without the last element of this one.
+   *
+   * @throws NoSuchElementException if this deque is empty
+   */
+  public PersistentHybridDeque<E> withoutLast() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    if (size == 1) {
+      return empty();
+    }
+    if (rear.length > 0) {
+      return new PersistentHybridDeque<E>(front, frontChunks, rearChunks, dropLast(rear),
+          size - 1);
+    }
+    if (rearChunks != null) {
+      return new PersistentHybridDeque<E>(front, frontChunks, rearChunks.next,
+          dropLast(rearChunks.elements), size - 1);
+    }
+    if (frontChunks == null) {
+      return new PersistentHybridDeque<E>(dropLast(front), null, null, NO_ELEMENTS, size - 1);
+    }
+
+    // Move the back half of the front chunks over to the rear
+    Chunk[] chunks = toArray(frontChunks);
+    int keep = chunks.length / 2;
+    Chunk moved = null;
+    for (int i = keep; i < chunks.length - 1; i++) {
+      moved = new Chunk(chunks[i].elements, moved);
+    }
+    return new PersistentHybridDeque<E>(front, prefix(chunks, keep), moved,
+        dropLast(chunks[chunks.length - 1].elements), size - 1);
+  }
+
+  /**
+   * Copy a list's chunks into an array, head first.
+   */
+  private static Chunk[] toArray(Chunk list) {
+    Chunk[] chunks = new Chunk[list.length];
+    for (int i = 0; i < chunks.length; i++) {
+      chunks[i] = list;
+      list = list.next;
+    }
+    return chunks;
+  }
+
+  /**
+   * Build a new list of the first count chunks of an array, in the same order.
+   */
+  private static Chunk prefix(Chunk[] chunks, int count) {
+    Chunk list = null;
+    for (int i = count - 1; i >= 0; i--) {
+      list = new Chunk(chunks[i].elements, list);
+    }
+    return list;
+  }
+
+  private static Object[] dropFirst(Object[] elements) {
+    Object[] result = new Object[elements.length - 1];
+    System.arraycopy(elements, 1, result, 0, result.length);
+    return result;
+  }
+
+  private static Object[] dropLast(Object[] elements) {
+    Object[] result = new Object[elements.length - 1];
+    System.arraycopy(elements, 0, result, 0, result.length);
+    return result;
+  }
+
+  /**
+   * Returns the first element, or null if this deque is empty.
+   */
+  @SuppressWarnings("unchecked")
+  public E peekFirst() {
+    if (size == 0) {
+      return null;
+    }
+    if (front.length > 0) {
+      return (E) front[0];
+    }
+    if (frontChunks != null) {
+      return (E) frontChunks.elements[0];
+    }
+    if (rearChunks != null) {
+      return (E) rearChunks.last.elements[0];
+    }
+    return (E) rear[0];
+  }
+
+  /**
+   * Returns the last element, or null if this deque is empty.
+   */
+  @SuppressWarnings("unchecked")
+  public E peekLast() {
+    if (size == 0) {
+      return null;
+    }
+    if (rear.length > 0) {
+      return (E) rear[rear.length - 1];
+    }
+    if (rearChunks != null) {
+      return (E) rearChunks.elements[CHUNK_SIZE - 1];
+    }
+    if (frontChunks != null) {
+      return (E) frontChunks.last.elements[CHUNK_SIZE - 1];
+    }
+    return (E) front[front.length - 1];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the arrays holding the elements, front to back.
+   */
+  private Object[][] arrays() {
+    int frontCount = frontChunks == null ? 0 : frontChunks.length;
+    int rearCount = rearChunks == null ? 0 : rearChunks.length;
+    Object[][] arrays = new Object[frontCount + rearCount + 2][];
+    arrays[0] = front;
+    Chunk chunk = frontChunks;
+    for (int i = 1; i <= frontCount; i++) {
+      arrays[i] = chunk.elements;
+      chunk = chunk.next;
+    }
+    chunk = rearChunks;
+    for (int i = frontCount + rearCount; i > frontCount; i--) {
+      arrays[i] = chunk.elements;
+      chunk = chunk.next;
+    }
+    arrays[arrays.length - 1] = rear;
+    return arrays;
+  }
+
+  /**
+   * Returns an iterator over the elements, front to back. The iterator does not support remove.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new ChunkIterator(false);
+  }
+
+  /**
+   * Returns an iterator over the elements, back to front. The iterator does not support remove.
+   */
+  public Iterator<E> descendingIterator() {
+    return new ChunkIterator(true);
+  }
+
+  @Override
+  public Object[] toArray() {
+    Object[] result = new Object[size];
+    int copied = 0;
+    for (Object[] elements : arrays()) {
+      System.arraycopy(elements, 0, result, copied, elements.length);
+      copied += elements.length;
+    }
+    return result;
+  }
+
+  private class ChunkIterator implements Iterator<E> {
+    private final Object[][] arrays = arrays();
+    private final boolean descending;
+    private int array;
+    private int index;
+    private int remaining = size;
+
+    ChunkIterator(boolean descending) {
+      this.descending = descending;
+      if (descending) {
+        array = arrays.length - 1;
+        index = arrays[array].length - 1;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+      if (remaining == 0) {
+        throw new NoSuchElementException();
+      }
+      if (descending) {
+        while (index < 0) {
+          array--;
+          index = arrays[array].length - 1;
+        }
+        remaining--;
+        return (E) arrays[array][index--];
+      }
+      while (index == arrays[array].length) {
+        array++;
+        index = 0;
+      }
+      remaining--;
+      return (E) arrays[array][index++];
+    }
+  }
+}
@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PersistentHybridDeque Test Class - Every version keeps its contents while later versions change.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+class PersistentHybridDequeTest {
+
+  @Test
+  void testEmpty() {
+    PersistentHybridDeque<Integer> empty = PersistentHybridDeque.empty();
+    assertEquals(0, empty.size());
+    assertNull(empty.peekFirst());
+    assertNull(empty.peekLast());
+    assertFalse(empty.iterator().hasNext());
+    assertThrows(NoSuchElementException.class, () -> {
+      empty.withoutFirst();
+    });
+    assertThrows(NoSuchElementException.class, () -> {
+      empty.withoutLast();
+    });
+    assertThrows(NullPointerException.class, () -> {
+      empty.withFirst(null);
+    });
+    assertThrows(UnsupportedOperationException.class, () -> {
+      empty.add(1);
+    });
+
+    PersistentHybridDeque<Integer> one = empty.withLast(1);
+    assertEquals(Integer.valueOf(1), one.peekFirst());
+    assertEquals(Integer.valueOf(1), one.peekLast());
+    assertEquals(0, empty.size());
+    assertTrue(one.withoutFirst().isEmpty());
+  }
+
+  @Test
+  void testVersionsAreIndependent() {
+    Random random = new Random(23);
+    ArrayDeque<Integer> model = new ArrayDeque<Integer>();
+    PersistentHybridDeque<Integer> deque = PersistentHybridDeque.empty();
+    List<PersistentHybridDeque<Integer>> versions = new ArrayList<PersistentHybridDeque<Integer>>();
+    List<List<Integer>> expected = new ArrayList<List<Integer>>();
+
+    for (int step = 0; step < 20000; step++) {
+      // Long runs at one end build and drain whole chunks, and force rebalancing
+      int operation = (step / 500) % 2 == 0 ? random.nextInt(4) : random.nextInt(6);
+      if (operation == 0) {
+        deque = deque.withFirst(step);
+        model.offerFirst(step);
+      } else if (operation == 1) {
+        deque = deque.withLast(step);
+        model.offerLast(step);
+      } else if (model.isEmpty()) {
+        continue;
+      } else if (operation % 2 == 0) {
+        assertEquals(model.peekFirst(), deque.peekFirst());
+        deque = deque.withoutFirst();
+        model.pollFirst();
+      } else {
+        assertEquals(model.peekLast(), deque.peekLast());
+        deque = deque.withoutLast();
+        model.pollLast();
+      }
+      assertEquals(model.size(), deque.size());
+      assertEquals(model.peekFirst(), deque.peekFirst());
+      assertEquals(model.peekLast(), deque.peekLast());
+      if (step % 97 == 0) {
+        versions.add(deque);
+        expected.add(new ArrayList<Integer>(model));
+      }
+    }
+
+    for (int i = 0; i < versions.size(); i++) {
+      PersistentHybridDeque<Integer> version = versions.get(i);
+      List<Integer> list = expected.get(i);
+      assertEquals(list, new ArrayList<Integer>(version));
+      assertEquals(list, Arrays.asList(version.toArray()));
+      List<Integer> reversed = new ArrayList<Integer>();
+      version.descendingIterator().forEachRemaining(reversed::add);
+      Collections.reverse(reversed);
+      assertEquals(list, reversed);
+    }
+  }
+
+  @Test
+  void testDrainFromOneEnd() {
+    List<Integer> values = new ArrayList<Integer>();
+    for (int i = 0; i < 5000; i++) {
+      values.add(i);
+    }
+    PersistentHybridDeque<Integer> all = PersistentHybridDeque.of(values);
+
+    // Everything was added at the back, so removing from the front has to rebalance
+    PersistentHybridDeque<Integer> deque = all;
+    for (int i = 0; i < 5000; i++) {
+      assertEquals(Integer.valueOf(i), deque.peekFirst());
+      assertEquals(Integer.valueOf(4999), deque.peekLast());
+      deque = deque.withoutFirst();
+    }
+    assertTrue(deque.isEmpty());
+
+    deque = all;
+    for (int i = 4999; i >= 0; i--) {
+      assertEquals(Integer.valueOf(i), deque.peekLast());
+      deque = deque.withoutLast();
+    }
+    assertTrue(deque.isEmpty());
+    assertEquals(values, new ArrayList<Integer>(all));
+
+    Iterator<Integer> iterator = all.iterator();
+    iterator.next();
+    assertThrows(UnsupportedOperationException.class, () -> {
+      iterator.remove();
+    });
+  }
+}
@@ -0,0 +1,102 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Converts elements to and from fixed-width binary records. Off-heap and file-backed deques use a
+ * codec to store elements in ByteBuffer blocks instead of Object arrays. Every record written by a
+ * codec takes exactly width() bytes.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public interface RecordCodec<E> {
+
+  /**
+   * Number of bytes in every record.
+   */
+  int width();
+
+  /**
+   * Write a record at an absolute offset. Must not change the buffer's position or limit.
+   *
+   * @param buffer The buffer to write to
+   * @param offset Byte offset of the record
+   * @param value The element to write, never null
+   */
+  void write(ByteBuffer buffer, int offset, E value);
+
+  /**
+   * Read a record at an absolute offset. Must not change the buffer's position or limit.
+   *
+   * @param buffer The buffer to read from
+   * @param offset Byte offset of the record
+   * @return The element, never null
+   */
+  E read(ByteBuffer buffer, int offset);
+
+  /**
+   * Codec storing each Integer in 4 bytes.
+   */
+  static RecordCodec<Integer> ints() {
+    return new RecordCodec<Integer>() {
+      @Override
+      public int width() {
+        return Integer.BYTES;
+      }
+
+      @Override
+      public void write(ByteBuffer buffer, int offset, Integer value) {
+        buffer.putInt(offset, value);
+      }
+
+      @Override
+      public Integer read(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset);
+      }
+    };
+  }
+
+  /**
+   * Codec storing each Long in 8 bytes.
+   */
+  static RecordCodec<Long> longs() {
+    return new RecordCodec<Long>() {
+      @Override
+      public int width() {
+        return Long.BYTES;
+      }
+
+      @Override
+      public void write(ByteBuffer buffer, int offset, Long value) {
+        buffer.putLong(offset, value);
+      }
+
+      @Override
+      public Long read(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset);
+      }
+    };
+  }
+
+  /**
+   * Codec storing each Double in 8 bytes.
+   */
+  static RecordCodec<Double> doubles() {
+    return new RecordCodec<Double>() {
+      @Override
+      public int width() {
+        return Double.BYTES;
+      }
+
+      @Override
+      public void write(ByteBuffer buffer, int offset, Double value) {
+        buffer.putDouble(offset, value);
+      }
+
+      @Override
+      public Double read(ByteBuffer buffer, int offset) {
+        return buffer.getDouble(offset);
+      }
+    };
+  }
+}
@@ -0,0 +1,504 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Deque that keeps its two ends in memory and spills its cold middle to disk. The front and back
+ * are ordinary HybridDeques; once they hold more than a memory budget of elements together, a
+ * segment of elements next to the middle is written to an append-only segment file and dropped
+ * from memory. Segments are read back, whole, when an end runs out of elements in memory. Elements
+ * are stored as fixed-width records written by a RecordCodec. Call close to delete the segment
+ * files. This implementation does not allow null's to be added to the collection. Adding a null
+ * will result in a NullPointerException.
+ *
+ * <p>Disk errors are thrown as UncheckedIOException.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public class SpillingHybridDeque<E> extends AbstractDeque<E> implements AutoCloseable {
+
+  /*
+   * IMPLEMENTATION NOTES ----------------------------------
+   *
+   * The deque is front, then the segments in order, then back. offerFirst only touches front and
+   * offerLast only touches back, and the polls only read a segment when their end is empty.
+   *
+   * When the budget is exceeded the larger end spills segmentSize elements from its inner side:
+   * the last elements of front become a new first segment, or the first elements of back become a
+   * new last segment. The budget is at least twice segmentSize, so the larger end always has a
+   * whole segment to spill. Each segment file is written once, front to back, through one reused
+   * buffer, and deleted when it is read back in.
+   */
+
+  private static final int DEFAULT_SEGMENT_SIZE = 4096;
+  private static final int IO_BUFFER_BYTES = 1 << 16;
+
+  private final RecordCodec<E> codec;
+  private final Path directory;
+  private final int memoryBudget;
+  private final int segmentSize;
+
+  private final HybridDeque<E> front = new HybridDeque<E>();
+  private final HybridDeque<E> back = new HybridDeque<E>();
+  private final ArrayDeque<Segment> segments = new ArrayDeque<Segment>();
+  private long spilled;
+  private int modCount;
+
+  private final E[] transfer;
+  private final ByteBuffer ioBuffer;
+  private boolean closed;
+
+  /**
+   * A run of elements stored in one file.
+   */
+  private static final class Segment {
+    private Path file;
+    private int count;
+
+    Segment(Path file, int count) {
+      this.file = file;
+      this.count = count;
+    }
+  }
+
+  /**
+   * Create a spilling deque with the default segment size.
+   *
+   * @param codec Codec for the elements
+   * @param directory Existing directory for the segment files
+   * @param memoryBudget Maximum number of elements kept in memory
+   * @throws IllegalArgumentException if memoryBudget is less than twice the segment size
+   */
+  public SpillingHybridDeque(RecordCodec<E> codec, Path directory, int memoryBudget) {
+    this(codec, directory, memoryBudget, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Create a spilling deque.
+   *
+   * @param codec Codec for the elements
+   * @param directory Existing directory for the segment files
+   * @param memoryBudget Maximum number of elements kept in memory
+   * @param segmentSize Number of elements written to each segment file
+   * @throws IllegalArgumentException if segmentSize is not positive or memoryBudget is less than
+   *         twice segmentSize
+   */
+  @SuppressWarnings("unchecked")
+  public SpillingHybridDeque(RecordCodec<E> codec, Path directory, int memoryBudget,
+      int segmentSize) {
+    this.codec = Objects.requireNonNull(codec);
+    this.directory = Objects.requireNonNull(directory);
+    if (segmentSize < 1) {
+      throw new IllegalArgumentException("Illegal segment size: " + segmentSize);
+    }
+    if (memoryBudget < 2 * segmentSize) {
+      throw new IllegalArgumentException("Illegal memory budget: " + memoryBudget);
+    }
+    this.memoryBudget = memoryBudget;
+    this.segmentSize = segmentSize;
+    this.transfer = (E[]) new Object[segmentSize];
+    int width = codec.width();
+    this.ioBuffer = ByteBuffer.allocateDirect(Math.max(width, IO_BUFFER_BYTES / width * width));
+  }
+
+  @Override
+  public boolean offerFirst(E e) {
+    ensureOpen();
+    front.offerFirst(e);
+    modCount++;
+    spillIfOverBudget();
+    return true;
+  }
+
+  @Override
+  public boolean offerLast(E e) {
+    ensureOpen();
+    back.offerLast(e);
+    modCount++;
+    spillIfOverBudget();
+    return true;
+  }
+
+  @Override
+  public E pollFirst() {
+    ensureOpen();
+    if (front.isEmpty() && !segments.isEmpty()) {
+      load(segments.pollFirst(), front);
+    }
+    E e = front.isEmpty() ? back.pollFirst() : front.pollFirst();
+    if (e != null) {
+      modCount++;
+    }
+    return e;
+  }
+
+  @Override
+  public E pollLast() {
+    ensureOpen();
+    if (back.isEmpty() && !segments.isEmpty()) {
+      load(segments.pollLast(), back);
+    }
+    E e = back.isEmpty() ? front.pollLast() : back.pollLast();
+    if (e != null) {
+      modCount++;
+    }
+    return e;
+  }
+
+  @Override
+  public E peekFirst() {
+    ensureOpen();
+    if (!front.isEmpty()) {
+      return front.peekFirst();
+    }
+    if (!segments.isEmpty()) {
+      // Read just the one record, so that peeking moves nothing and open iterators stay valid
+      return readRecord(segments.peekFirst(), 0);
+    }
+    return back.peekFirst();
+  }
+
+  @Override
+  public E peekLast() {
+    ensureOpen();
+    if (!back.isEmpty()) {
+      return back.peekLast();
+    }
+    if (!segments.isEmpty()) {
+      Segment segment = segments.peekLast();
+      return readRecord(segment, segment.count - 1);
+    }
+    return front.peekLast();
+  }
+
+  /**
+   * Write a segment from the inner side of the larger end if memory is over budget.
+   */
+  private void spillIfOverBudget() {
+    if (front.size() + back.size() <= memoryBudget) {
+      return;
+    }
+    if (front.size() >= back.size()) {
+      // pollLast fills transfer back to front
+      int count = front.pollLast(transfer, segmentSize);
+      reverse(transfer, count);
+      segments.offerFirst(write(transfer, count));
+    } else {
+      int count = back.pollFirst(transfer, segmentSize);
+      segments.offerLast(write(transfer, count));
+    }
+    Arrays.fill(transfer, null);
+  }
+
+  private static void reverse(Object[] a, int count) {
+    for (int i = 0, j = count - 1; i < j; i++, j--) {
+      Object temp = a[i];
+      a[i] = a[j];
+      a[j] = temp;
+    }
+  }
+
+  /**
+   * Write elements to a new segment file, front to back.
+   */
+  private Segment write(E[] elements, int count) {
+    Path file;
+    int width = codec.width();
+    try {
+      file = Files.createTempFile(directory, "segment-", ".dat");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      ioBuffer.clear();
+      for (int i = 0; i < count; i++) {
+        if (ioBuffer.remaining() < width) {
+          flush(channel);
+        }
+        codec.write(ioBuffer, ioBuffer.position(), elements[i]);
+        ioBuffer.position(ioBuffer.position() + width);
+      }
+      flush(channel);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    spilled += count;
+    return new Segment(file, count);
+  }
+
+  private void flush(FileChannel channel) throws IOException {
+    ioBuffer.flip();
+    while (ioBuffer.hasRemaining()) {
+      channel.write(ioBuffer);
+    }
+    ioBuffer.clear();
+  }
+
+  /**
+   * Read a segment file, front to back, into the given list.
+   */
+  private void read(Segment segment, List<? super E> out) {
+    int width = codec.width();
+    try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.READ)) {
+      ioBuffer.clear();
+      int count = 0;
+      while (count < segment.count) {
+        if (channel.read(ioBuffer) < 0) {
+          throw new IOException(segment.file + " is truncated");
+        }
+        ioBuffer.flip();
+        while (ioBuffer.remaining() >= width && count < segment.count) {
+          out.add(codec.read(ioBuffer, ioBuffer.position()));
+          ioBuffer.position(ioBuffer.position() + width);
+          count++;
+        }
+        ioBuffer.compact();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Read one record of a segment file.
+   */
+  private E readRecord(Segment segment, int index) {
+    int width = codec.width();
+    try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.READ)) {
+      ioBuffer.clear().limit(width);
+      long position = (long) index * width;
+      while (ioBuffer.hasRemaining()) {
+        if (channel.read(ioBuffer, position + ioBuffer.position()) < 0) {
+          throw new IOException(segment.file + " is truncated");
+        }
+      }
+      return codec.read(ioBuffer, 0);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Read a segment into an empty end and delete its file. Only the polls call this, and they count
+   * the modification themselves; moving elements between disk and memory does not change the
+   * deque's contents.
+   */
+  private void load(Segment segment, HybridDeque<E> end) {
+    List<E> elements = new ArrayList<E>(segment.count);
+    read(segment, elements);
+    end.addAll(elements);
+    spilled -= segment.count;
+    delete(segment);
+  }
+
+  private void delete(Segment segment) {
+    try {
+      Files.deleteIfExists(segment.file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public boolean removeFirstOccurrence(Object o) {
+    ensureOpen();
+    if (o == null) {
+      return false;
+    }
+    if (front.removeFirstOccurrence(o)) {
+      modCount++;
+      return true;
+    }
+    Iterator<Segment> it = segments.iterator();
+    while (it.hasNext()) {
+      if (removeFromSegment(it, o, true)) {
+        return true;
+      }
+    }
+    return removeFromEnd(back, o, true);
+  }
+
+  @Override
+  public boolean removeLastOccurrence(Object o) {
+    ensureOpen();
+    if (o == null) {
+      return false;
+    }
+    if (back.removeLastOccurrence(o)) {
+      modCount++;
+      return true;
+    }
+    Iterator<Segment> it = segments.descendingIterator();
+    while (it.hasNext()) {
+      if (removeFromSegment(it, o, false)) {
+        return true;
+      }
+    }
+    return removeFromEnd(front, o, false);
+  }
+
+  private boolean removeFromEnd(HybridDeque<E> end, Object o, boolean first) {
+    boolean removed = first ? end.removeFirstOccurrence(o) : end.removeLastOccurrence(o);
+    if (removed) {
+      modCount++;
+    }
+    return removed;
+  }
+
+  /**
+   * Remove the first or last occurrence of o from the segment the iterator returns next. The
+   * segment is rewritten to a new file without it, or dropped if that leaves it empty.
+   */
+  @SuppressWarnings("unchecked")
+  private boolean removeFromSegment(Iterator<Segment> it, Object o, boolean first) {
+    Segment segment = it.next();
+    List<E> elements = new ArrayList<E>(segment.count);
+    read(segment, elements);
+    int index = first ? elements.indexOf(o) : elements.lastIndexOf(o);
+    if (index < 0) {
+      return false;
+    }
+    elements.remove(index);
+    delete(segment);
+    spilled -= segment.count;
+    if (elements.isEmpty()) {
+      it.remove();
+    } else {
+      Segment rewritten = write((E[]) elements.toArray(), elements.size());
+      segment.file = rewritten.file;
+      segment.count = rewritten.count;
+    }
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return removeFirstOccurrence(o);
+  }
+
+  /**
+   * Number of elements currently stored in segment files.
+   */
+  public long spilledSize() {
+    return spilled;
+  }
+
+  @Override
+  public int size() {
+    return (int) Math.min(Integer.MAX_VALUE, front.size() + spilled + back.size());
+  }
+
+  @Override
+  public void clear() {
+    ensureOpen();
+    front.clear();
+    back.clear();
+    for (Segment segment : segments) {
+      delete(segment);
+    }
+    segments.clear();
+    spilled = 0;
+    modCount++;
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Deque is closed");
+    }
+  }
+
+  /**
+   * Delete the segment files and empty the deque. Closing a closed deque has no effect.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    clear();
+    closed = true;
+  }
+
+  /**
+   * Returns a fail-fast iterator over the elements, front to back. Each segment is read from disk
+   * when the iterator reaches it. The iterator does not support removal.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    ensureOpen();
+    return new CustomIterator(false);
+  }
+
+  /**
+   * Returns a fail-fast iterator over the elements, back to front. Each segment is read from disk
+   * when the iterator reaches it. The iterator does not support removal.
+   */
+  @Override
+  public Iterator<E> descendingIterator() {
+    ensureOpen();
+    return new CustomIterator(true);
+  }
+
+  private class CustomIterator implements Iterator<E> {
+    private final boolean descending;
+    private final Iterator<Segment> segmentIterator;
+    private Iterator<E> current;
+    private int stage;
+    private final int expectedModCount = modCount;
+
+    CustomIterator(boolean descending) {
+      this.descending = descending;
+      this.segmentIterator = descending ? segments.descendingIterator() : segments.iterator();
+      this.current = descending ? back.descendingIterator() : front.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      while (!current.hasNext()) {
+        if (stage == 0 && segmentIterator.hasNext()) {
+          List<E> elements = new ArrayList<E>();
+          read(segmentIterator.next(), elements);
+          current = descending ? reversed(elements) : elements.iterator();
+        } else if (stage == 0) {
+          stage = 1;
+          current = descending ? front.descendingIterator() : back.iterator();
+        } else {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public E next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return current.next();
+    }
+
+    private Iterator<E> reversed(List<E> elements) {
+      Collections.reverse(elements);
+      return elements.iterator();
+    }
+  }
+}
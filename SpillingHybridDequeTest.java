@@ -0,0 +1,151 @@
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * SpillingHybridDeque Test Class - Behavior checked against ArrayDeque with a small memory budget
+ * so that most elements live in segment files.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+class SpillingHybridDequeTest {
+
+  private Path directory;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    directory = Files.createTempDirectory("spilling-deque");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  private long segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    }
+  }
+
+  @Test
+  void testSpillsAndPagesBackIn() throws IOException {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SpillingHybridDeque<Integer>(RecordCodec.ints(), directory, 15, 8);
+    });
+
+    SpillingHybridDeque<Integer> deque =
+        new SpillingHybridDeque<Integer>(RecordCodec.ints(), directory, 16, 8);
+    for (int i = 0; i < 1000; i++) {
+      deque.offerLast(i);
+    }
+    assertEquals(1000, deque.size());
+    assertTrue(deque.spilledSize() >= 1000 - 16);
+    assertTrue(segmentFiles() > 100);
+
+    // Elements come back in order from both ends
+    for (int i = 0; i < 500; i++) {
+      assertEquals(Integer.valueOf(i), deque.pollFirst());
+      assertEquals(Integer.valueOf(999 - i), deque.pollLast());
+    }
+    assertTrue(deque.isEmpty());
+    assertEquals(0, segmentFiles());
+  }
+
+  @Test
+  void testPeekKeepsIteratorsValid() throws IOException {
+    SpillingHybridDeque<Integer> deque =
+        new SpillingHybridDeque<Integer>(RecordCodec.ints(), directory, 16, 8);
+    for (int i = 0; i < 100; i++) {
+      deque.offerLast(i);
+    }
+    long files = segmentFiles();
+    assertTrue(files > 0);
+
+    // Every element offered at the back, so the front end is empty and the first one is on disk
+    Iterator<Integer> iterator = deque.iterator();
+    assertEquals(Integer.valueOf(0), iterator.next());
+    assertEquals(Integer.valueOf(0), deque.peekFirst());
+    assertEquals(Integer.valueOf(99), deque.peekLast());
+    assertEquals(files, segmentFiles());
+    for (int i = 1; i < 100; i++) {
+      assertEquals(Integer.valueOf(i), iterator.next());
+    }
+    assertFalse(iterator.hasNext());
+
+    while (deque.size() > 1) {
+      deque.pollLast();
+    }
+    Iterator<Integer> descending = deque.descendingIterator();
+    assertEquals(Integer.valueOf(0), deque.peekLast());
+    assertEquals(Integer.valueOf(0), descending.next());
+    assertFalse(descending.hasNext());
+    deque.close();
+  }
+
+  @Test
+  void testMatchesArrayDeque() throws IOException {
+    SpillingHybridDeque<Integer> deque =
+        new SpillingHybridDeque<Integer>(RecordCodec.ints(), directory, 12, 4);
+    ArrayDeque<Integer> expected = new ArrayDeque<Integer>();
+    assertThrows(NullPointerException.class, () -> {
+      deque.offerFirst(null);
+    });
+
+    Random rand = new Random(240);
+    for (int step = 0; step < 20000; step++) {
+      int op = rand.nextInt(9);
+      Integer value = rand.nextInt(100);
+      if (op < 2) {
+        deque.offerFirst(value);
+        expected.offerFirst(value);
+      } else if (op < 4) {
+        deque.offerLast(value);
+        expected.offerLast(value);
+      } else if (op == 4) {
+        assertEquals(expected.pollFirst(), deque.pollFirst());
+      } else if (op == 5) {
+        assertEquals(expected.pollLast(), deque.pollLast());
+      } else if (op == 6) {
+        assertEquals(expected.removeFirstOccurrence(value), deque.removeFirstOccurrence(value));
+      } else if (op == 7) {
+        assertEquals(expected.removeLastOccurrence(value), deque.removeLastOccurrence(value));
+      } else {
+        assertEquals(expected.peekFirst(), deque.peekFirst());
+        assertEquals(expected.peekLast(), deque.peekLast());
+      }
+      assertEquals(expected.size(), deque.size());
+    }
+    assertTrue(deque.spilledSize() > 0);
+    assertEquals(new ArrayList<Integer>(expected), new ArrayList<Integer>(deque));
+
+    List<Integer> backwards = new ArrayList<Integer>();
+    deque.descendingIterator().forEachRemaining(backwards::add);
+    List<Integer> expectedBackwards = new ArrayList<Integer>();
+    expected.descendingIterator().forEachRemaining(expectedBackwards::add);
+    assertEquals(expectedBackwards, backwards);
+
+    deque.close();
+    assertEquals(0, segmentFiles());
+    assertThrows(IllegalStateException.class, () -> {
+      deque.offerLast(1);
+    });
+  }
+}
@@ -0,0 +1,280 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lock-free single-producer/single-consumer queue using the same linked-block layout as
+ * HybridDeque. Exactly one thread may call offer (the producer) and exactly one thread may call
+ * poll, peek and iterator (the consumer); size and isEmpty may be called from any thread. This
+ * implementation does not allow null's to be added to the collection. Adding a null will result in
+ * a NullPointerException.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public class SpscHybridQueue<E> extends AbstractQueue<E> {
+
+  /*
+   * IMPLEMENTATION NOTES ----------------------------------
+   *
+   * The producer owns tailBlock and tailIndex (the next slot to write) and the consumer owns
+   * headBlock and headIndex (the next slot to read). Neither thread ever writes the other's fields,
+   * so the fast path needs no locks and no compare-and-set.
+   *
+   * The producer publishes an element by writing its slot with release semantics, and publishes a
+   * new block by writing the old block's next link with release semantics before it writes any slot
+   * of the new block. The consumer reads slots and next links with acquire semantics, so a non-null
+   * slot is always a fully constructed element. A null slot, or a full block whose next link is
+   * still null, means the queue is empty from the consumer's point of view.
+   *
+   * The producer never revisits a slot, so the consumer clears slots with plain writes. Drained
+   * blocks are simply dropped once the consumer moves past them.
+   *
+   * produced and consumed count the elements each side has handled. They are only used for size.
+   *
+   * Each thread writes its own fields on every operation, so the two sets live in separate holder
+   * objects, producer and consumer, rather than side by side in this one. Each holder has 128 bytes
+   * of padding before its fields (in a superclass, which the JVM always lays out first) and after
+   * them (in a subclass, laid out last), so neither side's fields share a cache line, or the
+   * adjacent line the hardware prefetches with it, with the other side's or with anything else on
+   * the heap. This is the layout @Contended would give, without needing -XX:-RestrictContended.
+   */
+
+  private static final int DEFAULT_BLOCK_SIZE = 64;
+
+  private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+  private static final VarHandle NEXT;
+  private static final VarHandle PRODUCED;
+  private static final VarHandle CONSUMED;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      NEXT = lookup.findVarHandle(Block.class, "next", Block.class);
+      PRODUCED = lookup.findVarHandle(ProducerFields.class, "produced", long.class);
+      CONSUMED = lookup.findVarHandle(ConsumerFields.class, "consumed", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final int blockSize;
+  private final Producer producer = new Producer();
+  private final Consumer consumer = new Consumer();
+
+  /**
+   * Padding laid out before the fields of either side. The int fills the gap after the object
+   * header, which the JVM would otherwise give to a subclass field.
+   */
+  private static class LeadingPad {
+    private int gap;
+    private long p00, p01, p02, p03, p04, p05, p06, p07;
+    private long p08, p09, p10, p11, p12, p13, p14, p15;
+  }
+
+  /**
+   * Fields written only by the producer.
+   */
+  private static class ProducerFields extends LeadingPad {
+    Block tailBlock;
+    int tailIndex;
+    long produced;
+  }
+
+  /**
+   * Producer fields with padding laid out after them.
+   */
+  private static final class Producer extends ProducerFields {
+    private long p16, p17, p18, p19, p20, p21, p22, p23;
+    private long p24, p25, p26, p27, p28, p29, p30, p31;
+  }
+
+  /**
+   * Fields written only by the consumer.
+   */
+  private static class ConsumerFields extends LeadingPad {
+    Block headBlock;
+    int headIndex;
+    long consumed;
+  }
+
+  /**
+   * Consumer fields with padding laid out after them.
+   */
+  private static final class Consumer extends ConsumerFields {
+    private long p16, p17, p18, p19, p20, p21, p22, p23;
+    private long p24, p25, p26, p27, p28, p29, p30, p31;
+  }
+
+  /**
+   * Singly linked block containing an array with space for multiple elements.
+   */
+  private static final class Block {
+    private final Object[] elements;
+    private Block next;
+
+    /**
+     * Block Constructor.
+     *
+     * @param length Number of elements the block can hold
+     */
+    Block(int length) {
+      this.elements = new Object[length];
+    }
+  }
+
+  /**
+   * Default Constructor.
+   */
+  public SpscHybridQueue() {
+    this(DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Create a queue whose blocks hold the given number of elements.
+   *
+   * @param blockSize Elements per block
+   * @throws IllegalArgumentException if blockSize is not positive
+   */
+  public SpscHybridQueue(int blockSize) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("Illegal block size: " + blockSize);
+    }
+    this.blockSize = blockSize;
+    Block block = new Block(blockSize);
+    producer.tailBlock = block;
+    consumer.headBlock = block;
+  }
+
+  /**
+   * Add an element to the end of the queue. Must only be called by the producer thread.
+   */
+  @Override
+  public boolean offer(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+
+    Producer p = producer;
+    if (p.tailIndex == blockSize) {
+      Block block = new Block(blockSize);
+      NEXT.setRelease(p.tailBlock, block);
+      p.tailBlock = block;
+      p.tailIndex = 0;
+    }
+    SLOT.setRelease(p.tailBlock.elements, p.tailIndex, e);
+    p.tailIndex++;
+    PRODUCED.setRelease(p, p.produced + 1);
+    return true;
+  }
+
+  /**
+   * Remove the element at the front of the queue. Must only be called by the consumer thread.
+   */
+  @Override
+  public E poll() {
+    if (!advanceHead()) {
+      return null;
+    }
+    Consumer c = consumer;
+    @SuppressWarnings("unchecked")
+    E e = (E) SLOT.getAcquire(c.headBlock.elements, c.headIndex);
+    if (e == null) {
+      return null;
+    }
+    c.headBlock.elements[c.headIndex] = null;
+    c.headIndex++;
+    CONSUMED.setRelease(c, c.consumed + 1);
+    return e;
+  }
+
+  /**
+   * Return the element at the front of the queue without removing it. Must only be called by the
+   * consumer thread.
+   */
+  @Override
+  public E peek() {
+    if (!advanceHead()) {
+      return null;
+    }
+    @SuppressWarnings("unchecked")
+    E e = (E) SLOT.getAcquire(consumer.headBlock.elements, consumer.headIndex);
+    return e;
+  }
+
+  /**
+   * Move the consumer to the next block if it has read all of the current one.
+   *
+   * @return false if the current block is used up and the producer has not linked another yet
+   */
+  private boolean advanceHead() {
+    Consumer c = consumer;
+    if (c.headIndex == blockSize) {
+      Block next = (Block) NEXT.getAcquire(c.headBlock);
+      if (next == null) {
+        return false;
+      }
+      c.headBlock = next;
+      c.headIndex = 0;
+    }
+    return true;
+  }
+
+  /**
+   * Number of elements offered but not yet polled. When both threads are active this is only a
+   * snapshot.
+   */
+  @Override
+  public int size() {
+    long taken = (long) CONSUMED.getAcquire(consumer);
+    long given = (long) PRODUCED.getAcquire(producer);
+    return (int) Math.min(given - taken, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Iterate over the elements from front to back. Must only be called by the consumer thread.
+   * Elements offered during the iteration may or may not be seen. The iterator does not support
+   * removal.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new CustomIterator();
+  }
+
+  private class CustomIterator implements Iterator<E> {
+    private Block block = consumer.headBlock;
+    private int index = consumer.headIndex;
+
+    @Override
+    public boolean hasNext() {
+      if (index == blockSize) {
+        Block next = (Block) NEXT.getAcquire(block);
+        if (next == null) {
+          return false;
+        }
+        block = next;
+        index = 0;
+      }
+      return SLOT.getAcquire(block.elements, index) != null;
+    }
+
+    @Override
+    public E next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      @SuppressWarnings("unchecked")
+      E e = (E) SLOT.getAcquire(block.elements, index);
+      index++;
+      return e;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/**
+ * SpscHybridQueue Test Class - Single threaded behavior and a producer/consumer ordering stress
+ * test.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+class SpscHybridQueueTest {
+
+  @Test
+  void testSingleThreaded() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SpscHybridQueue<String>(0);
+    });
+
+    SpscHybridQueue<String> queue = new SpscHybridQueue<String>(2);
+    assertThrows(NullPointerException.class, () -> {
+      queue.offer(null);
+    });
+    assertNull(queue.poll());
+    assertNull(queue.peek());
+    assertTrue(queue.isEmpty());
+
+    queue.offer("One");
+    queue.offer("Two");
+    queue.offer("Three");
+    assertEquals(3, queue.size());
+    assertEquals("One", queue.peek());
+    assertEquals("One", queue.poll());
+    assertEquals("Two", queue.poll());
+
+    // Drain exactly to a block boundary, then keep going
+    assertEquals("Three", queue.poll());
+    assertNull(queue.poll());
+    assertNull(queue.peek());
+    queue.offer("Four");
+    assertEquals("Four", queue.peek());
+
+    List<String> seen = new ArrayList<String>();
+    queue.offer("Five");
+    queue.offer("Six");
+    for (String s : queue) {
+      seen.add(s);
+    }
+    assertEquals(List.of("Four", "Five", "Six"), seen);
+
+    Iterator<String> it = queue.iterator();
+    it.next();
+    assertThrows(UnsupportedOperationException.class, () -> {
+      it.remove();
+    });
+    it.next();
+    it.next();
+    assertThrows(NoSuchElementException.class, () -> {
+      it.next();
+    });
+    assertEquals(3, queue.size());
+  }
+
+  @Test
+  void testProducerConsumerOrdering() throws InterruptedException {
+    final int count = 2_000_000;
+    SpscHybridQueue<Integer> queue = new SpscHybridQueue<Integer>(16);
+    AtomicReference<String> failure = new AtomicReference<String>();
+
+    Thread producer = new Thread(() -> {
+      for (int i = 0; i < count; i++) {
+        queue.offer(i);
+      }
+    });
+    Thread consumer = new Thread(() -> {
+      int expected = 0;
+      while (expected < count) {
+        Integer value = queue.poll();
+        if (value == null) {
+          Thread.onSpinWait();
+        } else if (value != expected) {
+          failure.set("expected " + expected + " but polled " + value);
+          return;
+        } else {
+          expected++;
+        }
+      }
+    });
+
+    producer.start();
+    consumer.start();
+    producer.join(60000);
+    consumer.join(60000);
+
+    assertFalse(producer.isAlive());
+    assertFalse(consumer.isAlive());
+    assertNull(failure.get());
+    assertEquals(0, queue.size());
+    assertNull(queue.poll());
+  }
+}
@@ -0,0 +1,223 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Work-stealing deque using the block layout of HybridDeque (Chase-Lev style). One thread, the
+ * owner, pushes and pops at the right end with offerLast and pollLast without any compare-and-set
+ * in the common case. Any number of other threads, the thieves, take elements from the left end
+ * with steal. Because elements live in fixed-size blocks, growing the deque only copies block
+ * references into a larger directory and never copies elements. This implementation does not allow
+ * null's to be added to the collection. Adding a null will result in a NullPointerException.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+public class WorkStealingHybridDeque<E> {
+
+  /*
+   * IMPLEMENTATION NOTES ----------------------------------
+   *
+   * top and bottom are logical positions that only grow: the elements are at positions top to
+   * bottom - 1. Position p lives in block number p / blockSize, and block number k is held in
+   * directory[k % directory.length], slot p % blockSize. Thieves advance top with a CAS; only the
+   * owner writes bottom and the directory.
+   *
+   * The directory is used circularly, so the block for block number k is reused for k + length
+   * once every element in it has been taken. Before the owner starts a block that would still be
+   * in use, it publishes a directory twice as long that holds the same Block objects for the live
+   * block numbers. A thief reads top, then bottom, then the directory, so it always sees a
+   * directory at least as new as the one the elements it can take were written to. A thief that
+   * read a stale top may see the wrong element or an unallocated block, but its CAS on top then
+   * fails and it retries.
+   *
+   * pollLast follows Chase-Lev: the owner first lowers bottom, then reads top. Only when exactly
+   * one element is left does it race the thieves with a CAS on top.
+   *
+   * Thieves never clear the slots they take, since the owner may already be reusing them. Those
+   * references are dropped when the owner overwrites the slot, so at most one directory's worth
+   * of taken elements is kept reachable.
+   */
+
+  private static final int DEFAULT_BLOCK_SIZE = 64;
+  private static final int INITIAL_DIRECTORY_LENGTH = 8;
+
+  private static final VarHandle TOP;
+
+  static {
+    try {
+      TOP = MethodHandles.lookup().findVarHandle(WorkStealingHybridDeque.class, "top", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final int blockShift;
+  private final int blockMask;
+
+  private volatile long top;
+  private volatile long bottom;
+  private volatile Block[] directory;
+
+  /**
+   * Fixed-size block of elements. Blocks are reused circularly and never copied.
+   */
+  private static final class Block {
+    private final Object[] elements;
+
+    /**
+     * Block Constructor.
+     *
+     * @param length Number of elements the block can hold
+     */
+    Block(int length) {
+      this.elements = new Object[length];
+    }
+  }
+
+  /**
+   * Default Constructor.
+   */
+  public WorkStealingHybridDeque() {
+    this(DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Create a deque whose blocks hold the given number of elements.
+   *
+   * @param blockSize Elements per block, a power of two
+   * @throws IllegalArgumentException if blockSize is not a positive power of two
+   */
+  public WorkStealingHybridDeque(int blockSize) {
+    if (blockSize < 1 || Integer.bitCount(blockSize) != 1) {
+      throw new IllegalArgumentException("Illegal block size: " + blockSize);
+    }
+    this.blockShift = Integer.numberOfTrailingZeros(blockSize);
+    this.blockMask = blockSize - 1;
+    this.directory = new Block[INITIAL_DIRECTORY_LENGTH];
+  }
+
+  /**
+   * Add an element to the right end of the deque. Must only be called by the owner thread.
+   *
+   * @param e The element to add
+   */
+  public void offerLast(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    long b = bottom;
+    Block[] dir = directory;
+    long blockNumber = b >>> blockShift;
+    if ((b & blockMask) == 0) {
+      long first = top >>> blockShift;
+      if (blockNumber - first >= dir.length) {
+        dir = growDirectory(dir, first, blockNumber);
+      }
+    }
+    int slot = (int) (blockNumber & (dir.length - 1));
+    Block block = dir[slot];
+    if (block == null) {
+      block = new Block(blockMask + 1);
+      dir[slot] = block;
+    }
+    block.elements[(int) (b & blockMask)] = e;
+    bottom = b + 1;
+  }
+
+  /**
+   * Remove the element at the right end of the deque. Must only be called by the owner thread.
+   *
+   * @return The removed element, or null if the deque is empty
+   */
+  @SuppressWarnings("unchecked")
+  public E pollLast() {
+    long b = bottom - 1;
+    Block[] dir = directory;
+    bottom = b;
+    long t = top;
+    if (t > b) {
+      bottom = b + 1;
+      return null;
+    }
+
+    Object[] elements = dir[(int) ((b >>> blockShift) & (dir.length - 1))].elements;
+    int index = (int) (b & blockMask);
+    E e = (E) elements[index];
+    if (t == b) {
+      // Last element: race the thieves for it
+      if (!TOP.compareAndSet(this, t, t + 1)) {
+        e = null;
+      }
+      bottom = b + 1;
+    }
+    if (e != null) {
+      elements[index] = null;
+    }
+    return e;
+  }
+
+  /**
+   * Remove the element at the left end of the deque. May be called by any thread.
+   *
+   * @return The removed element, or null if the deque is empty
+   */
+  @SuppressWarnings("unchecked")
+  public E steal() {
+    while (true) {
+      long t = top;
+      long b = bottom;
+      if (t >= b) {
+        return null;
+      }
+      Block[] dir = directory;
+      Block block = dir[(int) ((t >>> blockShift) & (dir.length - 1))];
+      if (block == null) {
+        // Only possible with a stale top; the CAS would fail
+        continue;
+      }
+      E e = (E) block.elements[(int) (t & blockMask)];
+      if (TOP.compareAndSet(this, t, t + 1)) {
+        return e;
+      }
+    }
+  }
+
+  /**
+   * Double the directory, keeping the same Block objects for the live block numbers.
+   *
+   * @param old The current directory
+   * @param first Block number of the leftmost live block
+   * @param last Block number about to be started
+   * @return The new directory, already published
+   */
+  private Block[] growDirectory(Block[] old, long first, long last) {
+    int length = old.length * 2;
+    while (last - first >= length) {
+      length *= 2;
+    }
+    Block[] dir = new Block[length];
+    for (long k = first; k < last; k++) {
+      dir[(int) (k & (length - 1))] = old[(int) (k & (old.length - 1))];
+    }
+    directory = dir;
+    return dir;
+  }
+
+  /**
+   * Number of elements in the deque. When other threads are active this is only a snapshot.
+   */
+  public int size() {
+    long b = bottom;
+    long t = top;
+    return (int) Math.max(0L, Math.min(b - t, Integer.MAX_VALUE));
+  }
+
+  /**
+   * Returns true if the deque holds no elements. When other threads are active this is only a
+   * snapshot.
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+}
@@ -0,0 +1,118 @@
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.jupiter.api.Test;
+
+/**
+ * WorkStealingHybridDeque Test Class - Owner-only behavior and a stress test with several thieves.
+ *
+ * @author Walker Todd
+ * @version 4/2/2023
+ *
+ */
+class WorkStealingHybridDequeTest {
+
+  @Test
+  void testOwnerAndSteal() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new WorkStealingHybridDeque<Integer>(3);
+    });
+
+    WorkStealingHybridDeque<Integer> deque = new WorkStealingHybridDeque<Integer>(2);
+    assertThrows(NullPointerException.class, () -> {
+      deque.offerLast(null);
+    });
+    assertNull(deque.pollLast());
+    assertNull(deque.steal());
+    assertTrue(deque.isEmpty());
+
+    // Enough elements to grow the directory several times
+    for (int i = 0; i < 1000; i++) {
+      deque.offerLast(i);
+    }
+    assertEquals(1000, deque.size());
+    assertEquals(Integer.valueOf(999), deque.pollLast());
+    assertEquals(Integer.valueOf(0), deque.steal());
+    assertEquals(Integer.valueOf(1), deque.steal());
+    for (int i = 998; i >= 500; i--) {
+      assertEquals(Integer.valueOf(i), deque.pollLast());
+    }
+    for (int i = 2; i < 500; i++) {
+      assertEquals(Integer.valueOf(i), deque.steal());
+    }
+    assertNull(deque.steal());
+    assertNull(deque.pollLast());
+    assertEquals(0, deque.size());
+
+    // Blocks are reused as the window slides forward
+    for (int i = 0; i < 10000; i++) {
+      deque.offerLast(i);
+      deque.offerLast(i);
+      assertEquals(Integer.valueOf(i), deque.steal());
+      assertEquals(Integer.valueOf(i), deque.pollLast());
+    }
+    assertTrue(deque.isEmpty());
+  }
+
+  @Test
+  void testConcurrentStealing() throws InterruptedException {
+    final int count = 1_000_000;
+    WorkStealingHybridDeque<Integer> deque = new WorkStealingHybridDeque<Integer>(16);
+    AtomicIntegerArray seen = new AtomicIntegerArray(count);
+    AtomicBoolean done = new AtomicBoolean();
+
+    List<Thread> thieves = new ArrayList<Thread>();
+    for (int t = 0; t < 3; t++) {
+      thieves.add(new Thread(() -> {
+        while (true) {
+          Integer value = deque.steal();
+          if (value != null) {
+            seen.incrementAndGet(value);
+          } else if (done.get() && deque.isEmpty()) {
+            return;
+          } else {
+            Thread.onSpinWait();
+          }
+        }
+      }));
+    }
+    for (Thread t : thieves) {
+      t.start();
+    }
+
+    // The owner pushes in bursts and pops some of its own work back
+    Random rand = new Random(240);
+    int next = 0;
+    while (next < count) {
+      int burst = Math.min(count - next, 1 + rand.nextInt(200));
+      for (int i = 0; i < burst; i++) {
+        deque.offerLast(next++);
+      }
+      int pops = rand.nextInt(100);
+      for (int i = 0; i < pops; i++) {
+        Integer value = deque.pollLast();
+        if (value == null) {
+          break;
+        }
+        seen.incrementAndGet(value);
+      }
+    }
+    Integer value;
+    while ((value = deque.pollLast()) != null) {
+      seen.incrementAndGet(value);
+    }
+    done.set(true);
+    for (Thread t : thieves) {
+      t.join(60000);
+      assertFalse(t.isAlive());
+    }
+
+    // Every element was taken exactly once, by the owner or a thief
+    for (int i = 0; i < count; i++) {
+      assertEquals(1, seen.get(i), "element " + i);
+    }
+  }
+}